@@ -0,0 +1,87 @@
+package com.betflow.money;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Confronto tra BigDecimal e Money sui calcoli in memoria più frequenti:
+ * la somma degli importi (roll-up delle serie, totali dell'import) e il rigioco dei saldi
+ * con vincite arrotondate ai centesimi (riconciliazione).
+ * Gli importi arrivano come BigDecimal, quindi la conversione a Money è inclusa nella misura.
+ *
+ * Money è usato solo dove il rigioco arrotonda ogni vincita ai centesimi (riconciliazione dei saldi
+ * e vincite delle scommesse chiuse); le somme semplici di serie storiche, import ed esposizione
+ * restano su BigDecimal.
+ * Esecuzione: mvn -Pbenchmark test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyAggregationBenchmark {
+
+    @Param({"10000"})
+    private int operations;
+
+    private BigDecimal[] amounts;
+    private BigDecimal[] odds;
+    private boolean[] wins;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        amounts = new BigDecimal[operations];
+        odds = new BigDecimal[operations];
+        wins = new boolean[operations];
+        for (int i = 0; i < operations; i++) {
+            amounts[i] = BigDecimal.valueOf(100 + random.nextInt(100_000), 2);
+            odds[i] = BigDecimal.valueOf(101 + random.nextInt(900), 2);
+            wins[i] = random.nextBoolean();
+        }
+    }
+
+    @Benchmark
+    public BigDecimal sumBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal amount : amounts) {
+            total = total.add(amount);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal sumMoney() {
+        Money total = Money.ZERO;
+        for (BigDecimal amount : amounts) {
+            total = total.plus(Money.of(amount));
+        }
+        return total.toBigDecimal();
+    }
+
+    @Benchmark
+    public BigDecimal replayBigDecimal() {
+        BigDecimal balance = BigDecimal.ZERO;
+        for (int i = 0; i < operations; i++) {
+            BigDecimal payout = wins[i] ? amounts[i].multiply(odds[i]) : BigDecimal.ZERO;
+            balance = balance.subtract(amounts[i]).add(payout.setScale(2, RoundingMode.HALF_UP));
+        }
+        return balance;
+    }
+
+    @Benchmark
+    public BigDecimal replayMoney() {
+        Money balance = Money.ZERO;
+        for (int i = 0; i < operations; i++) {
+            Money stake = Money.of(amounts[i]);
+            Money payout = wins[i] ? stake.times(odds[i], RoundingMode.HALF_UP) : Money.ZERO;
+            balance = balance.minus(stake).plus(payout);
+        }
+        return balance.toBigDecimal();
+    }
+}
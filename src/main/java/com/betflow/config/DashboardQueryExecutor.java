@@ -0,0 +1,63 @@
+package com.betflow.config;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+/**
+ * Esegue in parallelo le query indipendenti della dashboard, ognuna nella propria transazione in sola lettura.
+ * Usa i virtual thread quando la JVM li supporta (Java 21+), altrimenti thread di piattaforma.
+ */
+@Component
+@Slf4j
+public class DashboardQueryExecutor {
+
+    private final ExecutorService executor;
+    private final TransactionTemplate readOnlyTransaction;
+
+    // Each running query holds a pooled connection, keep this below the datasource pool size
+    public DashboardQueryExecutor(PlatformTransactionManager transactionManager,
+                                  @Value("${betflow.dashboard.parallelism:4}") int parallelism) {
+        this.executor = Executors.newFixedThreadPool(parallelism, createThreadFactory());
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(() -> readOnlyTransaction.execute(status -> query.get()), executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static ThreadFactory createThreadFactory() {
+        // The project targets Java 17, so the virtual thread API is looked up reflectively
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "dashboard-query-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            log.info("Dashboard queries will run on virtual threads");
+            return factory;
+        } catch (ReflectiveOperationException e) {
+            ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+            return runnable -> {
+                Thread thread = defaultFactory.newThread(runnable);
+                thread.setName("dashboard-query-" + thread.getId());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.betflow.controllers;
 
 import com.betflow.dto.account.AccountDTO;
+import com.betflow.dto.pagination.CursorPageDTO;
 import com.betflow.services.AccountService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -25,6 +26,16 @@ public class AccountController {
         return ResponseEntity.ok(accountService.getAllAccounts());
     }
 
+    /**
+     * Paginazione a cursore: passare nextCursor della risposta precedente come cursor
+     */
+    @GetMapping("/page")
+    public ResponseEntity<CursorPageDTO<AccountDTO>> getAccountsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(accountService.getAccountsPage(cursor, size));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<AccountDTO> getAccountById(@PathVariable UUID id) {
         return ResponseEntity.ok(accountService.getAccountById(id));
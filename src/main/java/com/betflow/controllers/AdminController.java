@@ -0,0 +1,93 @@
+package com.betflow.controllers;
+
+import com.betflow.dto.admin.ReconciliationReportDTO;
+import com.betflow.dto.admin.RetryMetricsDTO;
+import com.betflow.dto.operation.OperationHistoryRebuildDTO;
+import com.betflow.dto.statistics.LedgerRollupRebuildDTO;
+import com.betflow.dto.statistics.ProfitBucketRebuildDTO;
+import com.betflow.services.BalanceReconciliationService;
+import com.betflow.services.ConcurrencyRetryService;
+import com.betflow.services.LedgerRollupService;
+import com.betflow.services.OperationHistoryService;
+import com.betflow.services.ProfitTimeSeriesService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@Slf4j
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminController {
+
+    private final LedgerRollupService ledgerRollupService;
+    private final ProfitTimeSeriesService profitTimeSeriesService;
+    private final OperationHistoryService operationHistoryService;
+    private final BalanceReconciliationService balanceReconciliationService;
+    private final ConcurrencyRetryService concurrencyRetryService;
+
+    /**
+     * POST /api/admin/ledger-rollup/rebuild
+     * Ricalcola il rollup per identità dalle operazioni e riporta le differenze trovate
+     */
+    @PostMapping("/ledger-rollup/rebuild")
+    public ResponseEntity<LedgerRollupRebuildDTO> rebuildLedgerRollup() {
+        log.info("REST request to rebuild the ledger rollup");
+        return ResponseEntity.ok(ledgerRollupService.rebuild());
+    }
+
+    /**
+     * POST /api/admin/profit-buckets/rebuild
+     * Ricalcola i bucket giornalieri delle serie storiche dalle operazioni esistenti
+     */
+    @PostMapping("/profit-buckets/rebuild")
+    public ResponseEntity<ProfitBucketRebuildDTO> rebuildProfitBuckets() {
+        log.info("REST request to rebuild the profit buckets");
+        return ResponseEntity.ok(profitTimeSeriesService.rebuild());
+    }
+
+    /**
+     * POST /api/admin/operation-history/rebuild
+     * Rigenera lo storico piatto delle operazioni usato dalle liste e dall'export
+     */
+    @PostMapping("/operation-history/rebuild")
+    public ResponseEntity<OperationHistoryRebuildDTO> rebuildOperationHistory() {
+        log.info("REST request to rebuild the operation history");
+        return ResponseEntity.ok(operationHistoryService.rebuild());
+    }
+
+    /**
+     * POST /api/admin/reconciliation
+     * Avvia in background la riconciliazione dei saldi dei conti con le operazioni
+     */
+    @PostMapping("/reconciliation")
+    public ResponseEntity<ReconciliationReportDTO> startReconciliation() {
+        log.info("REST request to start the balance reconciliation");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(balanceReconciliationService.start());
+    }
+
+    /**
+     * GET /api/admin/reconciliation
+     * Report dell'ultima riconciliazione (in corso o conclusa) con i conti il cui saldo non coincide
+     */
+    @GetMapping("/reconciliation")
+    public ResponseEntity<ReconciliationReportDTO> getReconciliationReport() {
+        ReconciliationReportDTO report = balanceReconciliationService.getLatest();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+    }
+
+    /**
+     * GET /api/admin/metrics/retries
+     * Esecuzioni, tentativi ripetuti ed esauriti per ogni operazione soggetta a conflitti di concorrenza
+     */
+    @GetMapping("/metrics/retries")
+    public ResponseEntity<List<RetryMetricsDTO>> getRetryMetrics() {
+        return ResponseEntity.ok(concurrencyRetryService.getMetrics());
+    }
+}
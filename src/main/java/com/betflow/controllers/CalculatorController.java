@@ -0,0 +1,32 @@
+package com.betflow.controllers;
+
+import com.betflow.dto.calculator.MatchedBetRequestDTO;
+import com.betflow.dto.calculator.MatchedBetResultDTO;
+import com.betflow.dto.calculator.ScenarioBatchRequestDTO;
+import com.betflow.dto.calculator.ScenarioBatchResultDTO;
+import com.betflow.services.MatchedBettingCalculatorService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/calculator")
+@RequiredArgsConstructor
+public class CalculatorController {
+
+    private final MatchedBettingCalculatorService calculatorService;
+
+    @PostMapping("/lay")
+    public ResponseEntity<MatchedBetResultDTO> calculateLay(@RequestBody @Valid MatchedBetRequestDTO request) {
+        return ResponseEntity.ok(calculatorService.calculate(request));
+    }
+
+    /**
+     * Coppie di quote in array paralleli (max 10.000); restituisce le prime limit per profitto garantito
+     */
+    @PostMapping("/scenarios")
+    public ResponseEntity<ScenarioBatchResultDTO> evaluateScenarios(@RequestBody @Valid ScenarioBatchRequestDTO request) {
+        return ResponseEntity.ok(calculatorService.evaluateBatch(request));
+    }
+}
@@ -1,18 +1,27 @@
 package com.betflow.controllers;
 
 import com.betflow.dto.operation.*;
+import com.betflow.dto.pagination.CursorPageDTO;
+import com.betflow.enums.OperationFileFormat;
+import com.betflow.services.BetIngestionService;
 import com.betflow.services.FinancialOperationService;
+import com.betflow.services.IdempotencyService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/operations")
@@ -20,6 +29,7 @@ import java.util.UUID;
 public class FinancialOperationController {
 
     private final FinancialOperationService financialOperationService;
+    private final BetIngestionService betIngestionService;
 
     // ==================== GENERAL OPERATIONS ====================
 
@@ -28,6 +38,18 @@ public class FinancialOperationController {
         return ResponseEntity.ok(financialOperationService.getAllOperations());
     }
 
+    /**
+     * Paginazione a cursore dalla più recente, opzionalmente per un solo conto:
+     * passare nextCursor della risposta precedente come cursor
+     */
+    @GetMapping("/page")
+    public ResponseEntity<CursorPageDTO<FinancialOperationDTO>> getOperationsPage(
+            @RequestParam(required = false) UUID accountId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(financialOperationService.getOperationsPage(accountId, cursor, size));
+    }
+
     @GetMapping("/account/{accountId}")
     public ResponseEntity<List<FinancialOperationDTO>> getOperationsByAccount(@PathVariable UUID accountId) {
         return ResponseEntity.ok(financialOperationService.getOperationsByAccount(accountId));
@@ -45,6 +67,45 @@ public class FinancialOperationController {
         return ResponseEntity.ok(financialOperationService.getOperationsByDateRange(startDate, endDate));
     }
 
+    /**
+     * Export in streaming (CSV o NDJSON) delle operazioni dell'intervallo, ordinate per data.
+     * Le righe vengono scritte man mano che arrivano dal database, senza costruire la lista in memoria.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportOperations(
+            @RequestParam(defaultValue = "CSV") OperationFileFormat format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        financialOperationService.validateExportRange(startDate, endDate);
+        boolean csv = format == OperationFileFormat.CSV;
+
+        StreamingResponseBody body = output ->
+                financialOperationService.exportOperations(startDate, endDate, format, output);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"operations." + (csv ? "csv" : "ndjson") + "\"")
+                .contentType(MediaType.parseMediaType(csv ? "text/csv" : "application/x-ndjson"))
+                .body(body);
+    }
+
+    /**
+     * Import in streaming di depositi, prelievi e scommesse dal corpo della richiesta.
+     * Il formato si indica con il parametro format oppure con il Content-Type (text/csv, application/x-ndjson).
+     */
+    @PostMapping("/import")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    public ResponseEntity<OperationImportResultDTO> importOperations(
+            @RequestParam(required = false) OperationFileFormat format,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            InputStream body) {
+        if (format == null) {
+            format = contentType != null && contentType.contains("json")
+                    ? OperationFileFormat.NDJSON
+                    : OperationFileFormat.CSV;
+        }
+        return ResponseEntity.ok(financialOperationService.importOperations(body, format));
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Void> deleteOperation(@PathVariable UUID id) {
@@ -71,8 +132,10 @@ public class FinancialOperationController {
 
     @PostMapping("/deposits")
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
-    public ResponseEntity<DepositDTO> createDeposit(@RequestBody @Valid DepositDTO dto) {
-        DepositDTO created = financialOperationService.createDeposit(dto);
+    public ResponseEntity<DepositDTO> createDeposit(
+            @RequestBody @Valid DepositDTO dto,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        DepositDTO created = financialOperationService.createDeposit(dto, idempotencyKey);
         return new ResponseEntity<>(created, HttpStatus.CREATED);
     }
 
@@ -100,8 +163,10 @@ public class FinancialOperationController {
 
     @PostMapping("/withdrawals")
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
-    public ResponseEntity<WithdrawalDTO> createWithdrawal(@RequestBody @Valid WithdrawalDTO dto) {
-        WithdrawalDTO created = financialOperationService.createWithdrawal(dto);
+    public ResponseEntity<WithdrawalDTO> createWithdrawal(
+            @RequestBody @Valid WithdrawalDTO dto,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        WithdrawalDTO created = financialOperationService.createWithdrawal(dto, idempotencyKey);
         return new ResponseEntity<>(created, HttpStatus.CREATED);
     }
 
@@ -132,11 +197,23 @@ public class FinancialOperationController {
 
     @PostMapping("/bets")
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
-    public ResponseEntity<BetOperationDTO> createBetOperation(@RequestBody @Valid BetOperationDTO dto) {
-        BetOperationDTO created = financialOperationService.createBetOperation(dto);
+    public ResponseEntity<BetOperationDTO> createBetOperation(
+            @RequestBody @Valid BetOperationDTO dto,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        BetOperationDTO created = financialOperationService.createBetOperation(dto, idempotencyKey);
         return new ResponseEntity<>(created, HttpStatus.CREATED);
     }
 
+    /**
+     * Registrazione a commit di gruppo: la risposta arriva quando il blocco che contiene la scommessa è scritto
+     */
+    @PostMapping("/bets/async")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    public CompletableFuture<ResponseEntity<BetOperationDTO>> submitBetOperation(@RequestBody @Valid BetOperationDTO dto) {
+        return betIngestionService.submit(dto)
+                .thenApply(created -> new ResponseEntity<>(created, HttpStatus.CREATED));
+    }
+
     @PutMapping("/bets/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
     public ResponseEntity<BetOperationDTO> updateBetOutcome(
@@ -144,4 +221,14 @@ public class FinancialOperationController {
             @RequestBody BetOperationDTO dto) {
         return ResponseEntity.ok(financialOperationService.updateBetOutcome(id, dto));
     }
+
+    /**
+     * Chiude in blocco le scommesse aperte di un evento (eventName + outcome)
+     * oppure un elenco di scommesse con il rispettivo esito (bets)
+     */
+    @PostMapping("/bets/settlements")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    public ResponseEntity<BulkSettlementResultDTO> settleBets(@RequestBody @Valid BulkSettlementRequestDTO request) {
+        return ResponseEntity.ok(financialOperationService.settleBets(request));
+    }
 }
@@ -1,6 +1,7 @@
 package com.betflow.controllers;
 
 import com.betflow.dto.identity.IdentityDTO;
+import com.betflow.dto.pagination.CursorPageDTO;
 import com.betflow.services.IdentityService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +25,16 @@ public class IdentityController {
         return ResponseEntity.ok(identityService.getAllIdentities());
     }
 
+    /**
+     * Paginazione a cursore: passare nextCursor della risposta precedente come cursor
+     */
+    @GetMapping("/page")
+    public ResponseEntity<CursorPageDTO<IdentityDTO>> getIdentitiesPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(identityService.getIdentitiesPage(cursor, size));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<IdentityDTO> getIdentityById(@PathVariable UUID id) {
         return ResponseEntity.ok(identityService.getIdentityById(id));
@@ -1,5 +1,6 @@
 package com.betflow.controllers;
 
+import com.betflow.dto.pagination.CursorPageDTO;
 import com.betflow.dto.platform.PlatformDTO;
 import com.betflow.enums.PlatformType;
 import com.betflow.services.PlatformService;
@@ -25,6 +26,16 @@ public class PlatformController {
         return ResponseEntity.ok(platformService.getAllPlatforms());
     }
 
+    /**
+     * Paginazione a cursore: passare nextCursor della risposta precedente come cursor
+     */
+    @GetMapping("/page")
+    public ResponseEntity<CursorPageDTO<PlatformDTO>> getPlatformsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(platformService.getPlatformsPage(cursor, size));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<PlatformDTO> getPlatformById(@PathVariable UUID id) {
         return ResponseEntity.ok(platformService.getPlatformById(id));
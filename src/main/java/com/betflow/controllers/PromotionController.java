@@ -1,13 +1,19 @@
 package com.betflow.controllers;
 
+import com.betflow.dto.calculator.MatchedBetResultDTO;
+import com.betflow.dto.pagination.CursorPageDTO;
 import com.betflow.dto.promotion.PromotionDTO;
 import com.betflow.enums.PromotionStatus;
+import com.betflow.services.MatchedBettingCalculatorService;
 import com.betflow.services.PromotionService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
@@ -15,22 +21,47 @@ import java.util.List;
 import java.util.UUID;
 
 @RestController
+@Validated
 @RequestMapping("/api/promotions")
 @RequiredArgsConstructor
 public class PromotionController {
 
     private final PromotionService promotionService;
+    private final MatchedBettingCalculatorService calculatorService;
 
     @GetMapping
     public ResponseEntity<List<PromotionDTO>> getAllPromotions() {
         return ResponseEntity.ok(promotionService.getAllPromotions());
     }
 
+    /**
+     * Paginazione a cursore: passare nextCursor della risposta precedente come cursor
+     */
+    @GetMapping("/page")
+    public ResponseEntity<CursorPageDTO<PromotionDTO>> getPromotionsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(promotionService.getPromotionsPage(cursor, size));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<PromotionDTO> getPromotionById(@PathVariable UUID id) {
         return ResponseEntity.ok(promotionService.getPromotionById(id));
     }
 
+    /**
+     * Valore estraibile dal bonus giocandolo come free bet con le quote indicate (commissione in percentuale)
+     */
+    @GetMapping("/{id}/extraction")
+    public ResponseEntity<MatchedBetResultDTO> getExtraction(
+            @PathVariable UUID id,
+            @RequestParam @DecimalMin(value = "1.01", message = "Back odds must be greater than 1") BigDecimal backOdds,
+            @RequestParam @DecimalMin(value = "1.01", message = "Lay odds must be greater than 1") BigDecimal layOdds,
+            @RequestParam(required = false) @DecimalMin("0") @DecimalMax(value = "100", inclusive = false)
+            BigDecimal commission) {
+        return ResponseEntity.ok(calculatorService.calculatePromotionExtraction(id, backOdds, layOdds, commission));
+    }
+
     @GetMapping("/account/{accountId}")
     public ResponseEntity<List<PromotionDTO>> getPromotionsByAccount(@PathVariable UUID accountId) {
         return ResponseEntity.ok(promotionService.getPromotionsByAccount(accountId));
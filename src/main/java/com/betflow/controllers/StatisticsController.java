@@ -1,13 +1,21 @@
 package com.betflow.controllers;
 
 import com.betflow.dto.statistics.DashboardDTO;
+import com.betflow.dto.statistics.ExposureDTO;
 import com.betflow.dto.statistics.IdentityProfitDTO;
+import com.betflow.dto.statistics.ProfitBucketDTO;
+import com.betflow.enums.TimeSeriesGranularity;
+import com.betflow.services.BetExposureService;
+import com.betflow.services.DashboardSnapshotService;
+import com.betflow.services.ProfitTimeSeriesService;
 import com.betflow.services.StatisticsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
@@ -18,6 +26,9 @@ import java.util.UUID;
 public class StatisticsController {
 
     private final StatisticsService statisticsService;
+    private final DashboardSnapshotService dashboardSnapshotService;
+    private final ProfitTimeSeriesService profitTimeSeriesService;
+    private final BetExposureService betExposureService;
 
     /**
      * GET /api/statistics/dashboard
@@ -26,7 +37,7 @@ public class StatisticsController {
     @GetMapping("/dashboard")
     public ResponseEntity<DashboardDTO> getDashboard() {
         log.info("REST request to get dashboard statistics");
-        DashboardDTO dashboard = statisticsService.getDashboardStatistics();
+        DashboardDTO dashboard = dashboardSnapshotService.getSnapshot();
         return ResponseEntity.ok(dashboard);
     }
 
@@ -52,6 +63,18 @@ public class StatisticsController {
         return ResponseEntity.ok(profits);
     }
 
+    /**
+     * GET /api/statistics/profits/top?k=5
+     * Ottiene le prime k identità per profitto netto
+     */
+    @GetMapping("/profits/top")
+    public ResponseEntity<List<IdentityProfitDTO>> getTopProfits(
+            @RequestParam(defaultValue = "" + StatisticsService.DEFAULT_TOP_IDENTITIES) int k) {
+        log.info("REST request to get top {} identities by profit", k);
+        List<IdentityProfitDTO> profits = statisticsService.getTopIdentitiesByProfit(k);
+        return ResponseEntity.ok(profits);
+    }
+
     /**
      * GET /api/statistics/profits/profitable
      * Ottiene solo le identità con profitto positivo
@@ -73,4 +96,86 @@ public class StatisticsController {
         List<IdentityProfitDTO> profits = statisticsService.getUnprofitableIdentities();
         return ResponseEntity.ok(profits);
     }
+
+    /**
+     * GET /api/statistics/timeseries/identities/{identityId}?from=&to=&granularity=DAY|WEEK|MONTH
+     * Serie storica di depositi, prelievi, puntate e vincite di un'identità (default ultimi 30 giorni)
+     */
+    @GetMapping("/timeseries/identities/{identityId}")
+    public ResponseEntity<List<ProfitBucketDTO>> getIdentityTimeSeries(
+            @PathVariable UUID identityId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "DAY") TimeSeriesGranularity granularity) {
+        log.info("REST request to get {} time series for identity: {}", granularity, identityId);
+        return ResponseEntity.ok(profitTimeSeriesService.getIdentitySeries(identityId, from, to, granularity));
+    }
+
+    /**
+     * GET /api/statistics/timeseries/accounts/{accountId}?from=&to=&granularity=DAY|WEEK|MONTH
+     * Serie storica di un singolo conto
+     */
+    @GetMapping("/timeseries/accounts/{accountId}")
+    public ResponseEntity<List<ProfitBucketDTO>> getAccountTimeSeries(
+            @PathVariable UUID accountId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "DAY") TimeSeriesGranularity granularity) {
+        log.info("REST request to get {} time series for account: {}", granularity, accountId);
+        return ResponseEntity.ok(profitTimeSeriesService.getAccountSeries(accountId, from, to, granularity));
+    }
+
+    /**
+     * GET /api/statistics/timeseries/platforms/{platformId}?from=&to=&granularity=DAY|WEEK|MONTH
+     * Serie storica di tutti i conti di una piattaforma
+     */
+    @GetMapping("/timeseries/platforms/{platformId}")
+    public ResponseEntity<List<ProfitBucketDTO>> getPlatformTimeSeries(
+            @PathVariable UUID platformId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "DAY") TimeSeriesGranularity granularity) {
+        log.info("REST request to get {} time series for platform: {}", granularity, platformId);
+        return ResponseEntity.ok(profitTimeSeriesService.getPlatformSeries(platformId, from, to, granularity));
+    }
+
+    /**
+     * GET /api/statistics/exposure
+     * Puntate aperte e vincita potenziale di tutte le scommesse non ancora chiuse
+     */
+    @GetMapping("/exposure")
+    public ResponseEntity<ExposureDTO> getTotalExposure() {
+        log.info("REST request to get total open exposure");
+        return ResponseEntity.ok(betExposureService.getTotalExposure());
+    }
+
+    /**
+     * GET /api/statistics/exposure/accounts/{accountId}
+     * Esposizione delle scommesse aperte di un conto
+     */
+    @GetMapping("/exposure/accounts/{accountId}")
+    public ResponseEntity<ExposureDTO> getAccountExposure(@PathVariable UUID accountId) {
+        log.info("REST request to get open exposure for account: {}", accountId);
+        return ResponseEntity.ok(betExposureService.getAccountExposure(accountId));
+    }
+
+    /**
+     * GET /api/statistics/exposure/identities/{identityId}
+     * Esposizione delle scommesse aperte di tutti i conti di un'identità
+     */
+    @GetMapping("/exposure/identities/{identityId}")
+    public ResponseEntity<ExposureDTO> getIdentityExposure(@PathVariable UUID identityId) {
+        log.info("REST request to get open exposure for identity: {}", identityId);
+        return ResponseEntity.ok(betExposureService.getIdentityExposure(identityId));
+    }
+
+    /**
+     * GET /api/statistics/exposure/events?name=
+     * Esposizione delle scommesse aperte su un evento
+     */
+    @GetMapping("/exposure/events")
+    public ResponseEntity<ExposureDTO> getEventExposure(@RequestParam String name) {
+        log.info("REST request to get open exposure for event: {}", name);
+        return ResponseEntity.ok(betExposureService.getEventExposure(name));
+    }
 }
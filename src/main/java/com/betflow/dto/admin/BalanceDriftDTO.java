@@ -0,0 +1,23 @@
+package com.betflow.dto.admin;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceDriftDTO {
+    private UUID accountId;
+    private String accountUsername;
+    private UUID identityId;
+    private BigDecimal openingBalance;
+    private BigDecimal storedBalance;
+    private BigDecimal replayedBalance;
+    // storedBalance - replayedBalance
+    private BigDecimal difference;
+    private long operations;
+}
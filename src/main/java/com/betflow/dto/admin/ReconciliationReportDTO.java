@@ -0,0 +1,31 @@
+package com.betflow.dto.admin;
+
+import com.betflow.enums.ReconciliationStatus;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationReportDTO {
+    private ReconciliationStatus status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long durationMs;
+    private int parallelism;
+    private int partitions;
+    private long accountsScanned;
+    private long operationsReplayed;
+    private long operationsPerSecond;
+    private int accountsWithDrift;
+    // Sum of the differences of every drifting account, including those beyond the report limit
+    private BigDecimal totalDifference;
+    private List<BalanceDriftDTO> drifts;
+    private boolean driftsTruncated;
+    private String error;
+}
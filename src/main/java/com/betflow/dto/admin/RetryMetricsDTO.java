@@ -0,0 +1,15 @@
+package com.betflow.dto.admin;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RetryMetricsDTO {
+    private String operation;
+    private long executions;
+    private long retries;
+    private long exhausted;
+}
@@ -0,0 +1,35 @@
+package com.betflow.dto.calculator;
+
+import com.betflow.enums.MatchedBetType;
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MatchedBetRequestDTO {
+
+    @NotNull(message = "Stake is required")
+    @DecimalMin(value = "0.01", message = "Stake must be greater than 0")
+    private BigDecimal stake;
+
+    @NotNull(message = "Back odds are required")
+    @DecimalMin(value = "1.01", message = "Back odds must be greater than 1")
+    private BigDecimal backOdds;
+
+    @NotNull(message = "Lay odds are required")
+    @DecimalMin(value = "1.01", message = "Lay odds must be greater than 1")
+    private BigDecimal layOdds;
+
+    // Exchange commission in percent (e.g. 5 for 5%), 0 if omitted
+    @DecimalMin(value = "0.00")
+    @DecimalMax(value = "100.00", inclusive = false)
+    private BigDecimal commission;
+
+    // QUALIFYING if omitted
+    private MatchedBetType betType;
+}
@@ -0,0 +1,29 @@
+package com.betflow.dto.calculator;
+
+import com.betflow.enums.MatchedBetType;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MatchedBetResultDTO {
+    // Position of the odds pair in a batch request, null for a single calculation
+    private Integer index;
+    private MatchedBetType betType;
+    private BigDecimal stake;
+    private BigDecimal backOdds;
+    private BigDecimal layOdds;
+    private BigDecimal commission;
+    private BigDecimal layStake;
+    private BigDecimal liability;
+    private BigDecimal profitIfBackWins;
+    private BigDecimal profitIfLayWins;
+    // Worst of the two outcomes: the qualifying loss (negative) or the extracted value of a free bet
+    private BigDecimal guaranteedProfit;
+    // Guaranteed profit as a percentage of the stake
+    private BigDecimal rating;
+}
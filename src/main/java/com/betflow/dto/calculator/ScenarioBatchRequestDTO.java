@@ -0,0 +1,36 @@
+package com.betflow.dto.calculator;
+
+import com.betflow.enums.MatchedBetType;
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScenarioBatchRequestDTO {
+
+    @NotNull(message = "Stake is required")
+    @DecimalMin(value = "0.01", message = "Stake must be greater than 0")
+    private BigDecimal stake;
+
+    @DecimalMin(value = "0.00")
+    @DecimalMax(value = "100.00", inclusive = false)
+    private BigDecimal commission;
+
+    private MatchedBetType betType;
+
+    // Odds pairs as two parallel arrays: backOdds[i] is matched with layOdds[i]
+    @NotNull(message = "Back odds are required")
+    private double[] backOdds;
+
+    @NotNull(message = "Lay odds are required")
+    private double[] layOdds;
+
+    // Number of best scenarios returned
+    @Min(1)
+    private Integer limit;
+}
@@ -0,0 +1,17 @@
+package com.betflow.dto.calculator;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScenarioBatchResultDTO {
+    private int evaluated;
+    private long durationMicros;
+    // Best scenarios first, by guaranteed profit
+    private List<MatchedBetResultDTO> scenarios;
+}
@@ -0,0 +1,21 @@
+package com.betflow.dto.operation;
+
+import com.betflow.enums.BetOutcome;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BetSettlementDTO {
+
+    @NotNull(message = "Bet ID is required")
+    private UUID betId;
+
+    @NotNull(message = "Outcome is required")
+    private BetOutcome outcome;
+}
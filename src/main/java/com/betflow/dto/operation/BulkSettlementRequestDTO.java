@@ -0,0 +1,25 @@
+package com.betflow.dto.operation;
+
+import com.betflow.enums.BetOutcome;
+import jakarta.validation.Valid;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Chiusura di più scommesse: tutte le scommesse aperte di un evento con lo stesso esito,
+ * oppure un elenco di scommesse ciascuna con il proprio esito.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkSettlementRequestDTO {
+
+    private String eventName;
+    private BetOutcome outcome;
+
+    @Valid
+    private List<BetSettlementDTO> bets;
+}
@@ -0,0 +1,26 @@
+package com.betflow.dto.operation;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkSettlementResultDTO {
+    private String eventName;
+    private int requested;
+    private int settled;
+    private int wins;
+    private int losses;
+    private int voids;
+    private BigDecimal totalStakes;
+    private BigDecimal totalPayout;
+    private int accountsUpdated;
+    // Bets not found or already settled (also by a concurrent request)
+    private List<UUID> skippedBetIds;
+}
@@ -0,0 +1,34 @@
+package com.betflow.dto.operation;
+
+import com.betflow.enums.BetOutcome;
+import com.betflow.enums.WithdrawalStatus;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Riga dell'export: stesse colonne accettate dall'import, più i dati descrittivi del conto
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OperationExportRowDTO {
+    private UUID id;
+    private String type;
+    private UUID accountId;
+    private String accountUsername;
+    private String platformName;
+    private BigDecimal amount;
+    private LocalDateTime operationDate;
+    private String notes;
+    private String paymentMethod;
+    private WithdrawalStatus status;
+    private LocalDateTime arrivalDate;
+    private String eventName;
+    private BigDecimal odds;
+    private BetOutcome outcome;
+}
@@ -0,0 +1,13 @@
+package com.betflow.dto.operation;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OperationHistoryRebuildDTO {
+    private int rowsInserted;
+    private long durationMs;
+}
@@ -0,0 +1,13 @@
+package com.betflow.dto.operation;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OperationImportErrorDTO {
+    private long line;
+    private String message;
+}
@@ -0,0 +1,25 @@
+package com.betflow.dto.operation;
+
+import com.betflow.enums.OperationFileFormat;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OperationImportResultDTO {
+    private OperationFileFormat format;
+    private long rowsRead;
+    private long rowsImported;
+    private long rowsRejected;
+    private int chunks;
+    private int accountsUpdated;
+    private long durationMs;
+    private double rowsPerSecond;
+    private List<OperationImportErrorDTO> errors;
+    // Only the first errors are listed, rowsRejected always has the full count
+    private boolean errorsTruncated;
+}
@@ -0,0 +1,35 @@
+package com.betflow.dto.operation;
+
+import com.betflow.enums.BetOutcome;
+import com.betflow.enums.WithdrawalStatus;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Riga di un file di import (CSV o NDJSON): i campi usati dipendono dal tipo di operazione
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OperationImportRowDTO {
+    // DEPOSIT, WITHDRAWAL or BET
+    private String type;
+    private UUID accountId;
+    private BigDecimal amount;
+    private LocalDateTime operationDate;
+    private String notes;
+    // Deposits
+    private String paymentMethod;
+    // Withdrawals
+    private WithdrawalStatus status;
+    private LocalDateTime arrivalDate;
+    // Bets
+    private String eventName;
+    private BigDecimal odds;
+    private BetOutcome outcome;
+}
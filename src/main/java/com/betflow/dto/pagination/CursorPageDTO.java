@@ -0,0 +1,20 @@
+package com.betflow.dto.pagination;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Pagina di risultati con il token opaco per richiedere la successiva
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPageDTO<T> {
+    private List<T> items;
+    // Null on the last page
+    private String nextCursor;
+    private boolean hasMore;
+}
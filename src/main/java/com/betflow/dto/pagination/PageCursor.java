@@ -0,0 +1,100 @@
+package com.betflow.dto.pagination;
+
+import com.betflow.exceptions.BadRequestException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Posizione di una paginazione keyset: chiave di ordinamento e id dell'ultima riga restituita.
+ * Ai client viene esposta solo come token opaco (Base64 URL-safe).
+ */
+@Getter
+@RequiredArgsConstructor
+public final class PageCursor {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private static final char SEPARATOR = '|';
+
+    private final String key;
+    private final UUID id;
+
+    /**
+     * Decodifica il token ricevuto dal client; null indica la prima pagina
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // The id never contains the separator, the key might
+            int separator = value.lastIndexOf(SEPARATOR);
+            return new PageCursor(value.substring(0, separator), UUID.fromString(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid page cursor");
+        }
+    }
+
+    /**
+     * Chiave di ordinamento per le paginazioni per data
+     */
+    public LocalDateTime getKeyAsDateTime() {
+        try {
+            return LocalDateTime.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid page cursor");
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((key + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Dimensione della pagina richiesta, con default e massimo
+     */
+    public static int pageSize(Integer size) {
+        if (size == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return size;
+    }
+
+    /**
+     * Limite per la query: una riga in più della pagina dice se ne esiste un'altra senza COUNT
+     */
+    public static Pageable limit(int size) {
+        return PageRequest.of(0, size + 1);
+    }
+
+    /**
+     * Costruisce la pagina dalle righe lette con {@link #limit(int)}
+     */
+    public static <E, T> CursorPageDTO<T> toPage(List<E> rows, int size, Function<E, PageCursor> cursorOf,
+                                                Function<E, T> mapper) {
+        boolean hasMore = rows.size() > size;
+        List<E> pageRows = hasMore ? rows.subList(0, size) : rows;
+
+        return CursorPageDTO.<T>builder()
+                .items(pageRows.stream().map(mapper).toList())
+                .nextCursor(hasMore ? cursorOf.apply(pageRows.get(size - 1)).encode() : null)
+                .hasMore(hasMore)
+                .build();
+    }
+}
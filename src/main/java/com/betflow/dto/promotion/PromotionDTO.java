@@ -27,6 +27,10 @@ public class PromotionDTO {
     private BigDecimal rolloverTarget;
 
     private BigDecimal rolloverDone;
+
+    @DecimalMin(value = "1.01", message = "Minimum odds must be greater than 1")
+    private BigDecimal minOdds;
+
     private BigDecimal rolloverPercentage;
     private LocalDate deadlineDate;
     private PromotionStatus status;
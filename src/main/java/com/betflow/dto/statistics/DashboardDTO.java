@@ -3,7 +3,9 @@ package com.betflow.dto.statistics;
 import lombok.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Getter
 @Setter
@@ -30,4 +32,9 @@ public class DashboardDTO {
     private int expiringPromotionsCount;
 
     private List<IdentityProfitDTO> topIdentitiesByProfit;
+
+    // Duration of each aggregate query, slowest first
+    private Map<String, Long> queryTimingsMs;
+
+    private LocalDateTime generatedAt;
 }
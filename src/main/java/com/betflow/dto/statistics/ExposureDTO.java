@@ -0,0 +1,20 @@
+package com.betflow.dto.statistics;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExposureDTO {
+    // ACCOUNT, IDENTITY, EVENT or TOTAL, with the account/identity id or the event name as key
+    private String scope;
+    private String key;
+    private long openBets;
+    private BigDecimal openStake;
+    // Returned if every open bet wins: stake x odds
+    private BigDecimal potentialPayout;
+}
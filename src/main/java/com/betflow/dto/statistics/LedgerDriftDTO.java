@@ -0,0 +1,26 @@
+package com.betflow.dto.statistics;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerDriftDTO {
+    private UUID identityId;
+    private String identityFullName;
+    private boolean missing;
+
+    private BigDecimal storedDeposits;
+    private BigDecimal expectedDeposits;
+    private BigDecimal storedWithdrawals;
+    private BigDecimal expectedWithdrawals;
+    private BigDecimal storedBalance;
+    private BigDecimal expectedBalance;
+    private Integer storedAccounts;
+    private int expectedAccounts;
+}
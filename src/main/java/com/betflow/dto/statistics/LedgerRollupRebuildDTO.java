@@ -0,0 +1,20 @@
+package com.betflow.dto.statistics;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerRollupRebuildDTO {
+    private int identitiesScanned;
+    private int rowsCreated;
+    private int rowsCorrected;
+    private int rowsRemoved;
+    private long durationMs;
+
+    private List<LedgerDriftDTO> drifts;
+}
@@ -0,0 +1,22 @@
+package com.betflow.dto.statistics;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProfitBucketDTO {
+    private LocalDate periodStart;
+    private LocalDate periodEnd;
+    private BigDecimal deposits;
+    private BigDecimal withdrawals;
+    private BigDecimal stakes;
+    private BigDecimal winnings;
+    // Betting result of the period: winnings - stakes
+    private BigDecimal net;
+}
@@ -0,0 +1,13 @@
+package com.betflow.dto.statistics;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProfitBucketRebuildDTO {
+    private int bucketsCreated;
+    private long durationMs;
+}
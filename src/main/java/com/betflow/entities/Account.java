@@ -9,7 +9,11 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "accounts")
+@Table(name = "accounts",
+        indexes = @Index(name = "idx_account_username_id", columnList = "username, id"))
+// Fetch plan for listings: identity and platform are read in the same statement
+@NamedEntityGraph(name = Account.GRAPH_DETAILS,
+        attributeNodes = {@NamedAttributeNode("identity"), @NamedAttributeNode("platform")})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -17,10 +21,17 @@ import java.util.UUID;
 @Builder
 public class Account {
 
+    public static final String GRAPH_DETAILS = "Account.details";
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
+    // Existing rows get 0 when the column is added
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private Long version;
+
     @Column(nullable = false)
     private String username;
 
@@ -31,6 +42,12 @@ public class Account {
     @Builder.Default
     private BigDecimal currentBalance = BigDecimal.ZERO;
 
+    // Starting point of the balance reconciliation replay. Rows that predate the column are NULL
+    // until BalanceReconciliationService backfills them at startup
+    @Column(name = "opening_balance", precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal openingBalance = BigDecimal.ZERO;
+
     @Column(name = "is_active")
     @Builder.Default
     private Boolean isActive = true;
@@ -9,7 +9,10 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "identities")
+@Table(name = "identities",
+        indexes = @Index(name = "idx_identity_last_name_id", columnList = "last_name, id"))
+// Fetch plan for listings: the manager is read in the same statement
+@NamedEntityGraph(name = Identity.GRAPH_MANAGER, attributeNodes = @NamedAttributeNode("manager"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -17,6 +20,8 @@ import java.util.UUID;
 @Builder
 public class Identity {
 
+    public static final String GRAPH_MANAGER = "Identity.manager";
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
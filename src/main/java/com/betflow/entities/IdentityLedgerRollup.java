@@ -0,0 +1,46 @@
+package com.betflow.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Totali contabili per identita' mantenuti in modo incrementale
+ * ad ogni operazione, per leggere il profitto con un solo accesso per chiave.
+ */
+@Entity
+@Table(name = "identity_ledger_rollups")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdentityLedgerRollup {
+
+    @Id
+    @Column(name = "identity_id")
+    private UUID identityId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "identity_id")
+    private Identity identity;
+
+    @Column(name = "total_deposits", nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal totalDeposits = BigDecimal.ZERO;
+
+    @Column(name = "total_withdrawals", nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal totalWithdrawals = BigDecimal.ZERO;
+
+    @Column(name = "total_balance", nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal totalBalance = BigDecimal.ZERO;
+
+    @Column(name = "accounts_count", nullable = false)
+    @Builder.Default
+    private Integer accountsCount = 0;
+}
@@ -0,0 +1,84 @@
+package com.betflow.entities;
+
+import com.betflow.enums.BetOutcome;
+import com.betflow.enums.WithdrawalStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Storico delle operazioni in forma piatta: una riga per operazione con i dati del conto
+ * e tutte le colonne dei sottotipi, per servire liste e paginazioni senza le join
+ * dell'ereditarieta' JOINED. Scritta insieme all'operazione, nella stessa transazione.
+ */
+@Entity
+@Table(name = "operation_history",
+        indexes = {
+                @Index(name = "idx_history_date_id", columnList = "operation_date, id"),
+                @Index(name = "idx_history_account_date_id", columnList = "account_id, operation_date, id"),
+                @Index(name = "idx_history_identity_date", columnList = "identity_id, operation_date"),
+                @Index(name = "idx_history_type_date", columnList = "operation_type, operation_date")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OperationHistoryEntry {
+
+    // Same id as the financial operation
+    @Id
+    private UUID id;
+
+    @Column(name = "operation_type", nullable = false, length = 20)
+    private String operationType;
+
+    @Column(name = "operation_date", nullable = false)
+    private LocalDateTime operationDate;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Column(columnDefinition = "TEXT")
+    private String notes;
+
+    @Column(name = "account_id", nullable = false)
+    private UUID accountId;
+
+    @Column(name = "account_username", nullable = false)
+    private String accountUsername;
+
+    @Column(name = "identity_id", nullable = false)
+    private UUID identityId;
+
+    @Column(name = "platform_id", nullable = false)
+    private UUID platformId;
+
+    @Column(name = "platform_name", nullable = false)
+    private String platformName;
+
+    // Deposits
+    @Column(name = "payment_method")
+    private String paymentMethod;
+
+    // Withdrawals
+    @Enumerated(EnumType.STRING)
+    @Column(name = "withdrawal_status")
+    private WithdrawalStatus status;
+
+    @Column(name = "arrival_date")
+    private LocalDateTime arrivalDate;
+
+    // Bets
+    @Column(name = "event_name")
+    private String eventName;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal odds;
+
+    @Enumerated(EnumType.STRING)
+    private BetOutcome outcome;
+}
@@ -0,0 +1,60 @@
+package com.betflow.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Totali giornalieri delle operazioni di un conto, aggiornati ad ogni operazione.
+ * Identita' e piattaforma sono duplicate sulla riga per aggregare senza join.
+ */
+@Entity
+@Table(name = "profit_daily_buckets",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "bucket_date"}),
+        indexes = {
+                @Index(name = "idx_profit_bucket_identity_date", columnList = "identity_id, bucket_date"),
+                @Index(name = "idx_profit_bucket_platform_date", columnList = "platform_id, bucket_date")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProfitDailyBucket {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "account_id", nullable = false)
+    private UUID accountId;
+
+    @Column(name = "identity_id", nullable = false)
+    private UUID identityId;
+
+    @Column(name = "platform_id", nullable = false)
+    private UUID platformId;
+
+    @Column(name = "bucket_date", nullable = false)
+    private LocalDate bucketDate;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal deposits = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal withdrawals = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal stakes = BigDecimal.ZERO;
+
+    // Payouts of won bets plus stakes refunded on void bets
+    @Column(nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal winnings = BigDecimal.ZERO;
+}
@@ -10,6 +10,10 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "promotions")
+// Fetch plan for listings: account and its platform are read in the same statement
+@NamedEntityGraph(name = Promotion.GRAPH_ACCOUNT,
+        attributeNodes = @NamedAttributeNode(value = "account", subgraph = "account"),
+        subgraphs = @NamedSubgraph(name = "account", attributeNodes = @NamedAttributeNode("platform")))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -17,10 +21,17 @@ import java.util.UUID;
 @Builder
 public class Promotion {
 
+    public static final String GRAPH_ACCOUNT = "Promotion.account";
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
+    // Existing rows get 0 when the column is added
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private Long version;
+
     @Column(nullable = false)
     private String description;
 
@@ -34,6 +45,10 @@ public class Promotion {
     @Builder.Default
     private BigDecimal rolloverDone = BigDecimal.ZERO;
 
+    // Settled bets below these odds do not count towards the rollover; null accepts any odds
+    @Column(name = "min_odds", precision = 10, scale = 2)
+    private BigDecimal minOdds;
+
     @Column(name = "deadline_date")
     private LocalDate deadlineDate;
 
@@ -0,0 +1,6 @@
+package com.betflow.enums;
+
+public enum DashboardQueryMode {
+    SERIAL,
+    PARALLEL
+}
@@ -0,0 +1,8 @@
+package com.betflow.enums;
+
+public enum MatchedBetType {
+    // Own money: the back stake is returned when the back bet wins
+    QUALIFYING,
+    // Free bet, stake not returned: only the winnings are paid
+    FREE_BET
+}
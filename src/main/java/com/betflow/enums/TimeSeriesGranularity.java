@@ -0,0 +1,7 @@
+package com.betflow.enums;
+
+public enum TimeSeriesGranularity {
+    DAY,
+    WEEK,
+    MONTH
+}
@@ -0,0 +1,14 @@
+package com.betflow.events;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Pubblicato dai servizi dopo ogni scrittura su identità, piattaforme, conti, promozioni e operazioni
+ */
+@Getter
+@RequiredArgsConstructor
+public class DomainDataChangedEvent {
+
+    private final String entityName;
+}
@@ -0,0 +1,39 @@
+package com.betflow.events;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Pubblicato quando cambiano le scommesse aperte: scommesse piazzate senza esito, chiuse o cancellate.
+ * removedAccountIds elenca i conti eliminati, le cui scommesse aperte sono cancellate in cascata.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class OpenBetsChangedEvent {
+
+    private final List<OpenBet> opened;
+    private final Collection<UUID> closedBetIds;
+    private final Collection<UUID> removedAccountIds;
+
+    public static OpenBetsChangedEvent opened(List<OpenBet> bets) {
+        return new OpenBetsChangedEvent(bets, List.of(), List.of());
+    }
+
+    public static OpenBetsChangedEvent closed(Collection<UUID> betIds) {
+        return new OpenBetsChangedEvent(List.of(), betIds, List.of());
+    }
+
+    public static OpenBetsChangedEvent accountsRemoved(Collection<UUID> accountIds) {
+        return new OpenBetsChangedEvent(List.of(), List.of(), accountIds);
+    }
+
+    public record OpenBet(UUID betId, UUID accountId, UUID identityId, String eventName,
+                          BigDecimal stake, BigDecimal odds) {
+    }
+}
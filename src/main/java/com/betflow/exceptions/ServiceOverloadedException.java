@@ -0,0 +1,8 @@
+package com.betflow.exceptions;
+
+public class ServiceOverloadedException extends RuntimeException {
+
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -3,6 +3,9 @@ package com.betflow.graphql;
 import com.betflow.dto.account.AccountDTO;
 import com.betflow.dto.identity.IdentityDTO;
 import com.betflow.dto.operation.BetOperationDTO;
+import com.betflow.dto.operation.BetSettlementDTO;
+import com.betflow.dto.operation.BulkSettlementRequestDTO;
+import com.betflow.dto.operation.BulkSettlementResultDTO;
 import com.betflow.dto.operation.DepositDTO;
 import com.betflow.dto.operation.WithdrawalDTO;
 import com.betflow.dto.platform.PlatformDTO;
@@ -21,8 +24,10 @@ import org.springframework.stereotype.Controller;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * GraphQL Mutation Controller
@@ -161,18 +166,18 @@ public class MutationController {
 
     @MutationMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
-    public DepositDTO createDeposit(@Argument Map<String, Object> input) {
+    public DepositDTO createDeposit(@Argument Map<String, Object> input, @Argument String idempotencyKey) {
         log.debug("GraphQL mutation: createDeposit");
         DepositDTO dto = mapToDepositDTO(input);
-        return financialOperationService.createDeposit(dto);
+        return financialOperationService.createDeposit(dto, idempotencyKey);
     }
 
     @MutationMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
-    public WithdrawalDTO createWithdrawal(@Argument Map<String, Object> input) {
+    public WithdrawalDTO createWithdrawal(@Argument Map<String, Object> input, @Argument String idempotencyKey) {
         log.debug("GraphQL mutation: createWithdrawal");
         WithdrawalDTO dto = mapToWithdrawalDTO(input);
-        return financialOperationService.createWithdrawal(dto);
+        return financialOperationService.createWithdrawal(dto, idempotencyKey);
     }
 
     @MutationMapping
@@ -185,10 +190,10 @@ public class MutationController {
 
     @MutationMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
-    public BetOperationDTO createBet(@Argument Map<String, Object> input) {
+    public BetOperationDTO createBet(@Argument Map<String, Object> input, @Argument String idempotencyKey) {
         log.debug("GraphQL mutation: createBet");
         BetOperationDTO dto = mapToBetDTO(input);
-        return financialOperationService.createBetOperation(dto);
+        return financialOperationService.createBetOperation(dto, idempotencyKey);
     }
 
     @MutationMapping
@@ -199,6 +204,14 @@ public class MutationController {
         return financialOperationService.updateBetOutcome(id, dto);
     }
 
+    @MutationMapping
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    public BulkSettlementResultDTO settleBets(@Argument Map<String, Object> input) {
+        log.debug("GraphQL mutation: settleBets");
+        BulkSettlementRequestDTO dto = mapToBulkSettlementDTO(input);
+        return financialOperationService.settleBets(dto);
+    }
+
     @MutationMapping
     @PreAuthorize("hasRole('ADMIN')")
     public Boolean deleteOperation(@Argument UUID id) {
@@ -265,6 +278,9 @@ public class MutationController {
         if (input.get("rolloverTarget") != null) {
             builder.rolloverTarget(new BigDecimal(input.get("rolloverTarget").toString()));
         }
+        if (input.get("minOdds") != null) {
+            builder.minOdds(new BigDecimal(input.get("minOdds").toString()));
+        }
         if (input.get("deadlineDate") != null) {
             builder.deadlineDate(LocalDate.parse((String) input.get("deadlineDate")));
         }
@@ -306,4 +322,21 @@ public class MutationController {
 
         return builder.build();
     }
+
+    @SuppressWarnings("unchecked")
+    private BulkSettlementRequestDTO mapToBulkSettlementDTO(Map<String, Object> input) {
+        BulkSettlementRequestDTO.BulkSettlementRequestDTOBuilder builder = BulkSettlementRequestDTO.builder();
+
+        if (input.get("eventName") != null) builder.eventName((String) input.get("eventName"));
+        if (input.get("outcome") != null) builder.outcome(BetOutcome.valueOf(input.get("outcome").toString()));
+        if (input.get("bets") != null) {
+            builder.bets(((List<Map<String, Object>>) input.get("bets")).stream()
+                    .map(bet -> new BetSettlementDTO(
+                            UUID.fromString(bet.get("betId").toString()),
+                            BetOutcome.valueOf(bet.get("outcome").toString())))
+                    .collect(Collectors.toList()));
+        }
+
+        return builder.build();
+    }
 }
@@ -1,22 +1,34 @@
 package com.betflow.graphql;
 
+import com.betflow.dto.pagination.CursorPageDTO;
+import com.betflow.dto.pagination.PageCursor;
 import com.betflow.dto.statistics.DashboardDTO;
+import com.betflow.dto.statistics.ExposureDTO;
 import com.betflow.dto.statistics.IdentityProfitDTO;
+import com.betflow.dto.statistics.ProfitBucketDTO;
 import com.betflow.entities.*;
 import com.betflow.enums.PlatformType;
 import com.betflow.enums.PromotionStatus;
+import com.betflow.enums.TimeSeriesGranularity;
 import com.betflow.enums.UserRole;
 import com.betflow.repositories.*;
+import com.betflow.services.BetExposureService;
+import com.betflow.services.DashboardSnapshotService;
+import com.betflow.services.ProfitTimeSeriesService;
 import com.betflow.services.StatisticsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SchemaMapping;
 import org.springframework.stereotype.Controller;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * GraphQL Query Controller
@@ -32,8 +44,12 @@ public class QueryController {
     private final AccountRepository accountRepository;
     private final PromotionRepository promotionRepository;
     private final FinancialOperationRepository financialOperationRepository;
+    private final OperationHistoryRepository operationHistoryRepository;
     private final UserRepository userRepository;
     private final StatisticsService statisticsService;
+    private final DashboardSnapshotService dashboardSnapshotService;
+    private final ProfitTimeSeriesService profitTimeSeriesService;
+    private final BetExposureService betExposureService;
 
     // ==================== IDENTITY QUERIES ====================
 
@@ -63,6 +79,14 @@ public class QueryController {
         return identityRepository.findByDocumentExpiryDateBetween(today, endDate);
     }
 
+    @QueryMapping
+    public CursorPageDTO<Identity> identitiesPage(@Argument Integer first, @Argument String after) {
+        log.debug("GraphQL query: identitiesPage({}, {})", first, after);
+        int size = PageCursor.pageSize(first);
+        return PageCursor.toPage(identityRepository.findPage(PageCursor.decode(after), size), size,
+                identity -> new PageCursor(identity.getLastName(), identity.getId()), Function.identity());
+    }
+
     // ==================== PLATFORM QUERIES ====================
 
     @QueryMapping
@@ -89,6 +113,14 @@ public class QueryController {
         return platformRepository.findByNameContainingIgnoreCase(name);
     }
 
+    @QueryMapping
+    public CursorPageDTO<Platform> platformsPage(@Argument Integer first, @Argument String after) {
+        log.debug("GraphQL query: platformsPage({}, {})", first, after);
+        int size = PageCursor.pageSize(first);
+        return PageCursor.toPage(platformRepository.findPage(PageCursor.decode(after), size), size,
+                platform -> new PageCursor(platform.getName(), platform.getId()), Function.identity());
+    }
+
     // ==================== ACCOUNT QUERIES ====================
 
     @QueryMapping
@@ -127,6 +159,14 @@ public class QueryController {
         return accountRepository.findByIsLimitedTrue();
     }
 
+    @QueryMapping
+    public CursorPageDTO<Account> accountsPage(@Argument Integer first, @Argument String after) {
+        log.debug("GraphQL query: accountsPage({}, {})", first, after);
+        int size = PageCursor.pageSize(first);
+        return PageCursor.toPage(accountRepository.findPage(PageCursor.decode(after), size), size,
+                account -> new PageCursor(account.getUsername(), account.getId()), Function.identity());
+    }
+
     // ==================== PROMOTION QUERIES ====================
 
     @QueryMapping
@@ -160,6 +200,14 @@ public class QueryController {
         return promotionRepository.findActivePromotionsExpiringWithinDays(PromotionStatus.ACTIVE, deadlineDate);
     }
 
+    @QueryMapping
+    public CursorPageDTO<Promotion> promotionsPage(@Argument Integer first, @Argument String after) {
+        log.debug("GraphQL query: promotionsPage({}, {})", first, after);
+        int size = PageCursor.pageSize(first);
+        return PageCursor.toPage(promotionRepository.findPage(PageCursor.decode(after), size), size,
+                promotion -> new PageCursor(promotion.getId().toString(), promotion.getId()), Function.identity());
+    }
+
     // ==================== FINANCIAL OPERATION QUERIES ====================
 
     @QueryMapping
@@ -212,12 +260,40 @@ public class QueryController {
         return financialOperationRepository.findPendingBets();
     }
 
+    @QueryMapping
+    public CursorPageDTO<FinancialOperation> operationsPage(@Argument UUID accountId, @Argument Integer first,
+                                                            @Argument String after) {
+        log.debug("GraphQL query: operationsPage({}, {}, {})", accountId, first, after);
+        int size = PageCursor.pageSize(first);
+        // Keyset on the flat history table, then one fetch of the page's entities
+        List<OperationHistoryEntry> entries = operationHistoryRepository.findPage(accountId,
+                PageCursor.decode(after), size);
+        Map<UUID, FinancialOperation> operations = financialOperationRepository.findWithAccountByIdIn(
+                        entries.stream().map(OperationHistoryEntry::getId).toList()).stream()
+                .collect(Collectors.toMap(FinancialOperation::getId, Function.identity()));
+        return PageCursor.toPage(entries, size,
+                entry -> new PageCursor(entry.getOperationDate().toString(), entry.getId()),
+                entry -> operations.get(entry.getId()));
+    }
+
     // ==================== STATISTICS QUERIES ====================
 
     @QueryMapping
     public DashboardDTO dashboard() {
         log.debug("GraphQL query: dashboard");
-        return statisticsService.getDashboardStatistics();
+        return dashboardSnapshotService.getSnapshot();
+    }
+
+    /**
+     * Senza argomento restituisce la classifica già presente nello snapshot della dashboard
+     */
+    @SchemaMapping(typeName = "Dashboard", field = "topIdentitiesByProfit")
+    public List<IdentityProfitDTO> topIdentitiesByProfit(DashboardDTO dashboard, @Argument Integer limit) {
+        if (limit == null || limit == StatisticsService.DEFAULT_TOP_IDENTITIES) {
+            return dashboard.getTopIdentitiesByProfit();
+        }
+        log.debug("GraphQL query: dashboard.topIdentitiesByProfit({})", limit);
+        return statisticsService.getTopIdentitiesByProfit(limit);
     }
 
     @QueryMapping
@@ -244,6 +320,54 @@ public class QueryController {
         return statisticsService.getUnprofitableIdentities();
     }
 
+    @QueryMapping
+    public List<ProfitBucketDTO> identityProfitSeries(@Argument UUID identityId, @Argument LocalDate from,
+                                                      @Argument LocalDate to,
+                                                      @Argument TimeSeriesGranularity granularity) {
+        log.debug("GraphQL query: identityProfitSeries({}, {})", identityId, granularity);
+        return profitTimeSeriesService.getIdentitySeries(identityId, from, to, granularity);
+    }
+
+    @QueryMapping
+    public List<ProfitBucketDTO> accountProfitSeries(@Argument UUID accountId, @Argument LocalDate from,
+                                                     @Argument LocalDate to,
+                                                     @Argument TimeSeriesGranularity granularity) {
+        log.debug("GraphQL query: accountProfitSeries({}, {})", accountId, granularity);
+        return profitTimeSeriesService.getAccountSeries(accountId, from, to, granularity);
+    }
+
+    @QueryMapping
+    public List<ProfitBucketDTO> platformProfitSeries(@Argument UUID platformId, @Argument LocalDate from,
+                                                      @Argument LocalDate to,
+                                                      @Argument TimeSeriesGranularity granularity) {
+        log.debug("GraphQL query: platformProfitSeries({}, {})", platformId, granularity);
+        return profitTimeSeriesService.getPlatformSeries(platformId, from, to, granularity);
+    }
+
+    @QueryMapping
+    public ExposureDTO totalExposure() {
+        log.debug("GraphQL query: totalExposure");
+        return betExposureService.getTotalExposure();
+    }
+
+    @QueryMapping
+    public ExposureDTO accountExposure(@Argument UUID accountId) {
+        log.debug("GraphQL query: accountExposure({})", accountId);
+        return betExposureService.getAccountExposure(accountId);
+    }
+
+    @QueryMapping
+    public ExposureDTO identityExposure(@Argument UUID identityId) {
+        log.debug("GraphQL query: identityExposure({})", identityId);
+        return betExposureService.getIdentityExposure(identityId);
+    }
+
+    @QueryMapping
+    public ExposureDTO eventExposure(@Argument String eventName) {
+        log.debug("GraphQL query: eventExposure({})", eventName);
+        return betExposureService.getEventExposure(eventName);
+    }
+
     // ==================== USER QUERIES ====================
 
     @QueryMapping
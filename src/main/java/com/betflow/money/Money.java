@@ -0,0 +1,131 @@
+package com.betflow.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Importo a virgola fissa in centesimi (scala 2, come le colonne degli importi) per le aggregazioni in memoria.
+ * Somme e prodotti restano su long senza allocare BigDecimal; ogni operazione che supererebbe
+ * il long lancia ArithmeticException invece di troncare. Alle interfacce (database, API) si torna a BigDecimal.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+
+    // Powers of ten that fit in a long, used to bring a factor's scale down to cents
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * Converte un importo con al massimo due decimali; null vale zero
+     */
+    public static Money of(BigDecimal amount) {
+        return of(amount, RoundingMode.UNNECESSARY);
+    }
+
+    /**
+     * Converte un importo arrotondandolo ai centesimi con la modalità indicata
+     */
+    public static Money of(BigDecimal amount, RoundingMode rounding) {
+        if (amount == null) {
+            return ZERO;
+        }
+        return ofCents(amount.setScale(SCALE, rounding).unscaledValue().longValueExact());
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money negate() {
+        return ofCents(Math.negateExact(cents));
+    }
+
+    /**
+     * Prodotto per un fattore decimale (es. una quota), arrotondato ai centesimi.
+     * Il calcolo resta su long finché il fattore ha al massimo 18 decimali e il prodotto ci sta.
+     */
+    public Money times(BigDecimal factor, RoundingMode rounding) {
+        int scale = factor.scale();
+        if (scale < 0 || scale >= POWERS_OF_TEN.length || factor.precision() > 18) {
+            return of(toBigDecimal().multiply(factor), rounding);
+        }
+        long product = Math.multiplyExact(cents, factor.unscaledValue().longValue());
+        return ofCents(divide(product, POWERS_OF_TEN[scale], rounding));
+    }
+
+    public int signum() {
+        return Long.signum(cents);
+    }
+
+    public long cents() {
+        return cents;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Money money && money.cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    private static long divide(long dividend, long divisor, RoundingMode rounding) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        int sign = Long.signum(dividend);
+        // |remainder| < divisor <= 10^18, so doubling it cannot overflow
+        int half = Long.compare(Math.abs(remainder) * 2, divisor);
+        boolean awayFromZero = switch (rounding) {
+            case UP -> true;
+            case DOWN -> false;
+            case CEILING -> sign > 0;
+            case FLOOR -> sign < 0;
+            case HALF_UP -> half >= 0;
+            case HALF_DOWN -> half > 0;
+            case HALF_EVEN -> half > 0 || (half == 0 && (quotient & 1) != 0);
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+        };
+        return awayFromZero ? quotient + sign : quotient;
+    }
+}
@@ -1,15 +1,22 @@
 package com.betflow.repositories;
 
+import com.betflow.dto.pagination.PageCursor;
 import com.betflow.entities.Account;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 
 @Repository
 public interface AccountRepository extends JpaRepository<Account, UUID> {
@@ -22,6 +29,25 @@ public interface AccountRepository extends JpaRepository<Account, UUID> {
 
     List<Account> findByIsLimitedTrue();
 
+    // ==================== FETCH PLANS ====================
+    // Same lists with identity and platform joined, for callers that map every row
+
+    @EntityGraph(Account.GRAPH_DETAILS)
+    @Query("SELECT a FROM Account a")
+    List<Account> findAllWithDetails();
+
+    @EntityGraph(Account.GRAPH_DETAILS)
+    List<Account> findWithDetailsByIdentityId(UUID identityId);
+
+    @EntityGraph(Account.GRAPH_DETAILS)
+    List<Account> findWithDetailsByPlatformId(UUID platformId);
+
+    @EntityGraph(Account.GRAPH_DETAILS)
+    List<Account> findWithDetailsByIsActiveTrue();
+
+    @EntityGraph(Account.GRAPH_DETAILS)
+    List<Account> findWithDetailsByIsLimitedTrue();
+
     @Query("SELECT a FROM Account a WHERE a.identity.id = :identityId AND a.platform.id = :platformId")
     Optional<Account> findByIdentityIdAndPlatformId(
             @Param("identityId") UUID identityId,
@@ -33,6 +59,20 @@ public interface AccountRepository extends JpaRepository<Account, UUID> {
     @Query("SELECT SUM(a.currentBalance) FROM Account a WHERE a.identity.id = :identityId")
     BigDecimal sumCurrentBalanceByIdentityId(@Param("identityId") UUID identityId);
 
+    @Modifying
+    @Query("UPDATE Account a SET a.currentBalance = a.currentBalance + :delta, a.version = a.version + 1 " +
+           "WHERE a.id = :accountId")
+    int addToBalance(@Param("accountId") UUID accountId, @Param("delta") BigDecimal delta);
+
+    /**
+     * Blocca le righe di tutti i conti in ordine di id, come fanno le scritture concorrenti
+     */
+    @Query(value = "SELECT id FROM accounts ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<UUID> lockAllAccounts();
+
+    @Query("SELECT a.currentBalance FROM Account a WHERE a.id = :accountId")
+    BigDecimal findCurrentBalanceById(@Param("accountId") UUID accountId);
+
     @Query("SELECT SUM(a.currentBalance) FROM Account a")
     BigDecimal sumAllCurrentBalances();
 
@@ -47,4 +87,91 @@ public interface AccountRepository extends JpaRepository<Account, UUID> {
            "JOIN FETCH a.platform " +
            "WHERE a.id = :id")
     Optional<Account> findByIdWithDetails(@Param("id") UUID id);
+
+    @EntityGraph(Account.GRAPH_DETAILS)
+    @Query("SELECT a FROM Account a ORDER BY a.username, a.id")
+    List<Account> findFirstPage(Pageable limit);
+
+    @EntityGraph(Account.GRAPH_DETAILS)
+    @Query("SELECT a FROM Account a " +
+           "WHERE a.username > :username OR (a.username = :username AND a.id > :id) " +
+           "ORDER BY a.username, a.id")
+    List<Account> findPageAfter(@Param("username") String username, @Param("id") UUID id, Pageable limit);
+
+    /**
+     * Pagina ordinata per username che riparte dall'ultima riga letta invece di usare OFFSET
+     */
+    default List<Account> findPage(PageCursor after, int size) {
+        return after == null
+                ? findFirstPage(PageCursor.limit(size))
+                : findPageAfter(after.getKey(), after.getId(), PageCursor.limit(size));
+    }
+
+    /**
+     * Id e nomi di ogni conto con la sua identita' e piattaforma, senza caricare le entita'
+     */
+    @Query("SELECT a.id AS accountId, a.username AS username, a.identity.id AS identityId, " +
+           "p.id AS platformId, p.name AS platformName FROM Account a JOIN a.platform p")
+    List<AccountKeysRow> findAllAccountKeys();
+
+    @Query("SELECT a.id AS accountId, a.username AS username, a.identity.id AS identityId, " +
+           "p.id AS platformId, p.name AS platformName FROM Account a JOIN a.platform p WHERE a.id IN :ids")
+    List<AccountKeysRow> findAccountKeysByIds(@Param("ids") Collection<UUID> ids);
+
+    interface AccountKeysRow {
+        UUID getAccountId();
+
+        String getUsername();
+
+        UUID getIdentityId();
+
+        UUID getPlatformId();
+
+        String getPlatformName();
+    }
+
+    // ==================== GROUPED COUNTS ====================
+    // Fill the DTO counters for a whole list with one query each, instead of initialising lazy collections
+
+    int COUNT_CHUNK_SIZE = 1000;
+
+    @Query("SELECT a.id AS id, " +
+           "(SELECT COUNT(p) FROM Promotion p WHERE p.account.id = a.id) AS promotions, " +
+           "(SELECT COUNT(fo) FROM FinancialOperation fo WHERE fo.account.id = a.id) AS operations " +
+           "FROM Account a WHERE a.id IN :accountIds")
+    List<AccountCountsRow> countChildrenByAccountIds(@Param("accountIds") Collection<UUID> accountIds);
+
+    @Query("SELECT a.identity.id AS id, COUNT(a) AS total FROM Account a " +
+           "WHERE a.identity.id IN :identityIds GROUP BY a.identity.id")
+    List<CountRow> countByIdentityIds(@Param("identityIds") Collection<UUID> identityIds);
+
+    @Query("SELECT a.platform.id AS id, COUNT(a) AS total FROM Account a " +
+           "WHERE a.platform.id IN :platformIds GROUP BY a.platform.id")
+    List<CountRow> countByPlatformIds(@Param("platformIds") Collection<UUID> platformIds);
+
+    /**
+     * Esegue un conteggio a blocchi di id, per non superare il limite di parametri della IN.
+     * Gli id senza righe non compaiono nel risultato.
+     */
+    static <R> List<R> countByIds(List<UUID> ids, Function<List<UUID>, List<R>> query) {
+        List<R> rows = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += COUNT_CHUNK_SIZE) {
+            rows.addAll(query.apply(ids.subList(from, Math.min(from + COUNT_CHUNK_SIZE, ids.size()))));
+        }
+        return rows;
+    }
+
+    interface CountRow {
+        UUID getId();
+
+        Long getTotal();
+    }
+
+    interface AccountCountsRow {
+        UUID getId();
+
+        Long getPromotions();
+
+        Long getOperations();
+    }
 }
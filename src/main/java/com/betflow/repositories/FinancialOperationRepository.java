@@ -4,6 +4,7 @@ import com.betflow.entities.BetOperation;
 import com.betflow.entities.Deposit;
 import com.betflow.entities.FinancialOperation;
 import com.betflow.entities.Withdrawal;
+import com.betflow.enums.BetOutcome;
 import com.betflow.enums.WithdrawalStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -12,12 +13,107 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface FinancialOperationRepository extends JpaRepository<FinancialOperation, UUID> {
 
+    // ==================== DTO PROJECTIONS ====================
+    // Lists read exactly the DTO columns in one statement from the flat operation_history table:
+    // no entity, lazy account or platform loads and no joins across the JOINED subclass tables
+
+    String OPERATION_COLUMNS = "h.id AS id, h.operationDate AS operationDate, h.amount AS amount, " +
+            "h.notes AS notes, h.operationType AS operationType, h.accountId AS accountId, " +
+            "h.accountUsername AS accountUsername, h.platformName AS platformName";
+    String OPERATION_ROW_SELECT = "SELECT " + OPERATION_COLUMNS + " FROM OperationHistoryEntry h ";
+    String DEPOSIT_ROW_SELECT = "SELECT " + OPERATION_COLUMNS + ", h.paymentMethod AS paymentMethod " +
+            "FROM OperationHistoryEntry h WHERE h.operationType = 'DEPOSIT' ";
+    String WITHDRAWAL_ROW_SELECT = "SELECT " + OPERATION_COLUMNS + ", h.status AS status, " +
+            "h.arrivalDate AS arrivalDate FROM OperationHistoryEntry h WHERE h.operationType = 'WITHDRAWAL' ";
+    String BET_ROW_SELECT = "SELECT " + OPERATION_COLUMNS + ", h.eventName AS eventName, h.odds AS odds, " +
+            "h.outcome AS outcome FROM OperationHistoryEntry h WHERE h.operationType = 'BET' ";
+
+    @Query(OPERATION_ROW_SELECT + "ORDER BY h.operationDate DESC")
+    List<OperationRow> findAllOperationRows();
+
+    @Query(OPERATION_ROW_SELECT + "WHERE h.accountId = :accountId ORDER BY h.operationDate DESC")
+    List<OperationRow> findOperationRowsByAccountId(@Param("accountId") UUID accountId);
+
+    @Query(OPERATION_ROW_SELECT + "WHERE h.identityId = :identityId ORDER BY h.operationDate DESC")
+    List<OperationRow> findOperationRowsByIdentityId(@Param("identityId") UUID identityId);
+
+    @Query(OPERATION_ROW_SELECT + "WHERE h.operationDate BETWEEN :startDate AND :endDate " +
+           "ORDER BY h.operationDate DESC")
+    List<OperationRow> findOperationRowsByDateRange(
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate
+    );
+
+    @Query(DEPOSIT_ROW_SELECT + "ORDER BY h.operationDate DESC")
+    List<DepositRow> findAllDepositRows();
+
+    @Query(DEPOSIT_ROW_SELECT + "AND h.accountId = :accountId ORDER BY h.operationDate DESC")
+    List<DepositRow> findDepositRowsByAccountId(@Param("accountId") UUID accountId);
+
+    @Query(WITHDRAWAL_ROW_SELECT + "ORDER BY h.operationDate DESC")
+    List<WithdrawalRow> findAllWithdrawalRows();
+
+    @Query(WITHDRAWAL_ROW_SELECT + "AND h.accountId = :accountId ORDER BY h.operationDate DESC")
+    List<WithdrawalRow> findWithdrawalRowsByAccountId(@Param("accountId") UUID accountId);
+
+    @Query(WITHDRAWAL_ROW_SELECT + "AND h.status = :status ORDER BY h.operationDate DESC")
+    List<WithdrawalRow> findWithdrawalRowsByStatus(@Param("status") WithdrawalStatus status);
+
+    @Query(BET_ROW_SELECT + "ORDER BY h.operationDate DESC")
+    List<BetRow> findAllBetRows();
+
+    @Query(BET_ROW_SELECT + "AND h.accountId = :accountId ORDER BY h.operationDate DESC")
+    List<BetRow> findBetRowsByAccountId(@Param("accountId") UUID accountId);
+
+    @Query(BET_ROW_SELECT + "AND h.outcome IS NULL ORDER BY h.operationDate DESC")
+    List<BetRow> findPendingBetRows();
+
+    /**
+     * Colonne comuni a tutte le operazioni, con i dati del conto
+     */
+    interface OperationRow {
+        UUID getId();
+
+        LocalDateTime getOperationDate();
+
+        BigDecimal getAmount();
+
+        String getNotes();
+
+        String getOperationType();
+
+        UUID getAccountId();
+
+        String getAccountUsername();
+
+        String getPlatformName();
+    }
+
+    interface DepositRow extends OperationRow {
+        String getPaymentMethod();
+    }
+
+    interface WithdrawalRow extends OperationRow {
+        WithdrawalStatus getStatus();
+
+        LocalDateTime getArrivalDate();
+    }
+
+    interface BetRow extends OperationRow {
+        String getEventName();
+
+        BigDecimal getOdds();
+
+        BetOutcome getOutcome();
+    }
+
     List<FinancialOperation> findByAccountId(UUID accountId);
 
     // ==================== DEPOSIT QUERIES ====================
@@ -50,6 +146,23 @@ public interface FinancialOperationRepository extends JpaRepository<FinancialOpe
     @Query("SELECT b FROM BetOperation b WHERE b.outcome IS NULL ORDER BY b.operationDate DESC")
     List<BetOperation> findPendingBets();
 
+    String PENDING_BET_SELECT = "SELECT b.id AS betId, b.amount AS amount, b.odds AS odds, " +
+            "b.eventName AS eventName, b.operationDate AS operationDate, a.id AS accountId, a.identity.id AS identityId, " +
+            "a.platform.id AS platformId " +
+            "FROM BetOperation b JOIN b.account a WHERE b.outcome IS NULL ";
+
+    @Query(PENDING_BET_SELECT)
+    List<PendingBetRow> findAllPendingBetRows();
+
+    @Query(PENDING_BET_SELECT + "AND b.eventName = :eventName")
+    List<PendingBetRow> findPendingBetsByEventName(@Param("eventName") String eventName);
+
+    @Query(PENDING_BET_SELECT + "AND b.id IN :ids")
+    List<PendingBetRow> findPendingBetsByIds(@Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT b.outcome FROM BetOperation b WHERE b.id = :id")
+    BetOutcome findBetOutcomeById(@Param("id") UUID id);
+
     @Query("SELECT fo FROM FinancialOperation fo WHERE fo.account.id = :accountId ORDER BY fo.operationDate DESC")
     List<FinancialOperation> findByAccountIdOrderByDateDesc(@Param("accountId") UUID accountId);
 
@@ -66,17 +179,20 @@ public interface FinancialOperationRepository extends JpaRepository<FinancialOpe
             @Param("endDate") LocalDateTime endDate
     );
 
-    @Query(value = "SELECT COALESCE(SUM(fo.amount), 0) FROM financial_operations fo " +
-                   "WHERE fo.account_id IN (SELECT a.id FROM accounts a WHERE a.identity_id = :identityId) " +
-                   "AND fo.operation_type = 'DEPOSIT'",
-           nativeQuery = true)
-    BigDecimal sumDepositsByIdentityId(@Param("identityId") UUID identityId);
+    /**
+     * Operazioni con conto e piattaforma già caricati, per le pagine lette dallo storico
+     */
+    @Query("SELECT fo FROM FinancialOperation fo " +
+           "JOIN FETCH fo.account a " +
+           "JOIN FETCH a.platform " +
+           "WHERE fo.id IN :ids")
+    List<FinancialOperation> findWithAccountByIdIn(@Param("ids") Collection<UUID> ids);
 
-    @Query(value = "SELECT COALESCE(SUM(fo.amount), 0) FROM financial_operations fo " +
-                   "WHERE fo.account_id IN (SELECT a.id FROM accounts a WHERE a.identity_id = :identityId) " +
-                   "AND fo.operation_type = 'WITHDRAWAL'",
-           nativeQuery = true)
-    BigDecimal sumWithdrawalsByIdentityId(@Param("identityId") UUID identityId);
+    @Query("SELECT COALESCE(SUM(d.amount), 0) FROM Deposit d WHERE d.account.id = :accountId")
+    BigDecimal sumDepositsByAccountId(@Param("accountId") UUID accountId);
+
+    @Query("SELECT COALESCE(SUM(w.amount), 0) FROM Withdrawal w WHERE w.account.id = :accountId")
+    BigDecimal sumWithdrawalsByAccountId(@Param("accountId") UUID accountId);
 
     @Query(value = "SELECT COALESCE(SUM(fo.amount), 0) FROM financial_operations fo " +
                    "WHERE fo.operation_type = 'DEPOSIT'",
@@ -87,4 +203,25 @@ public interface FinancialOperationRepository extends JpaRepository<FinancialOpe
                    "WHERE fo.operation_type = 'WITHDRAWAL'",
            nativeQuery = true)
     BigDecimal sumAllWithdrawals();
+
+    /**
+     * Dati minimi di una scommessa aperta necessari per chiuderla
+     */
+    interface PendingBetRow {
+        UUID getBetId();
+
+        BigDecimal getAmount();
+
+        BigDecimal getOdds();
+
+        String getEventName();
+
+        LocalDateTime getOperationDate();
+
+        UUID getAccountId();
+
+        UUID getIdentityId();
+
+        UUID getPlatformId();
+    }
 }
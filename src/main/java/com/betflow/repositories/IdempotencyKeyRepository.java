@@ -0,0 +1,42 @@
+package com.betflow.repositories;
+
+import com.betflow.entities.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, UUID> {
+
+    Optional<IdempotencyKey> findByUsernameAndOperationAndIdempotencyKey(String username, String operation,
+                                                                        String idempotencyKey);
+
+    /**
+     * Inserimento diretto (non merge): una richiesta concorrente con la stessa chiave
+     * attende il commit della prima e poi fallisce sul vincolo di unicità
+     */
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (id, username, operation, idempotency_key, request_hash, created_at) " +
+            "VALUES (:id, :username, :operation, :idempotencyKey, :requestHash, :createdAt)",
+            nativeQuery = true)
+    void insert(@Param("id") UUID id,
+                @Param("username") String username,
+                @Param("operation") String operation,
+                @Param("idempotencyKey") String idempotencyKey,
+                @Param("requestHash") String requestHash,
+                @Param("createdAt") LocalDateTime createdAt);
+
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.responseBody = :responseBody WHERE k.id = :id")
+    void saveResponse(@Param("id") UUID id, @Param("responseBody") String responseBody);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,48 @@
+package com.betflow.repositories;
+
+import com.betflow.entities.IdentityLedgerRollup;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface IdentityLedgerRollupRepository extends JpaRepository<IdentityLedgerRollup, UUID> {
+
+    @Query("SELECT r FROM IdentityLedgerRollup r JOIN FETCH r.identity WHERE r.identityId = :identityId")
+    Optional<IdentityLedgerRollup> findByIdWithIdentity(@Param("identityId") UUID identityId);
+
+    /**
+     * Blocca tutte le righe di rollup in ordine di identita', lo stesso ordine usato dagli incrementi
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM IdentityLedgerRollup r ORDER BY r.identityId")
+    List<IdentityLedgerRollup> findAllForUpdate();
+
+    @Modifying
+    @Query("UPDATE IdentityLedgerRollup r SET " +
+           "r.totalDeposits = r.totalDeposits + :deposits, " +
+           "r.totalWithdrawals = r.totalWithdrawals + :withdrawals, " +
+           "r.totalBalance = r.totalBalance + :balance, " +
+           "r.accountsCount = r.accountsCount + :accounts " +
+           "WHERE r.identityId = :identityId")
+    int applyDelta(
+            @Param("identityId") UUID identityId,
+            @Param("deposits") BigDecimal deposits,
+            @Param("withdrawals") BigDecimal withdrawals,
+            @Param("balance") BigDecimal balance,
+            @Param("accounts") int accounts
+    );
+
+    @Modifying
+    @Query("DELETE FROM IdentityLedgerRollup r WHERE r.identityId = :identityId")
+    void deleteByIdentityId(@Param("identityId") UUID identityId);
+}
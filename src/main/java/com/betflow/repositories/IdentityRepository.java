@@ -1,6 +1,9 @@
 package com.betflow.repositories;
 
+import com.betflow.dto.pagination.PageCursor;
 import com.betflow.entities.Identity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -20,14 +23,53 @@ public interface IdentityRepository extends JpaRepository<Identity, UUID> {
 
         List<Identity> findByManagerId(UUID managerId);
 
+        // Fetch plans: same lists with the manager joined, for callers that map every row
+
+        @EntityGraph(Identity.GRAPH_MANAGER)
+        @Query("SELECT i FROM Identity i")
+        List<Identity> findAllWithManager();
+
+        @EntityGraph(Identity.GRAPH_MANAGER)
+        List<Identity> findWithManagerByManagerId(UUID managerId);
+
+        @EntityGraph(Identity.GRAPH_MANAGER)
+        @Query("SELECT i FROM Identity i WHERE i.documentExpiryDate BETWEEN :startDate AND :endDate")
+        List<Identity> findWithManagerByDocumentExpiryDateBetween(
+                        @Param("startDate") LocalDate startDate,
+                        @Param("endDate") LocalDate endDate);
+
         @Query("SELECT i FROM Identity i WHERE i.documentExpiryDate BETWEEN :startDate AND :endDate")
         List<Identity> findByDocumentExpiryDateBetween(
                         @Param("startDate") LocalDate startDate,
                         @Param("endDate") LocalDate endDate);
 
+        @Query("SELECT COUNT(i) FROM Identity i WHERE i.documentExpiryDate BETWEEN :startDate AND :endDate")
+        long countByDocumentExpiryDateBetween(
+                        @Param("startDate") LocalDate startDate,
+                        @Param("endDate") LocalDate endDate);
+
         @Query("SELECT i FROM Identity i WHERE i.documentExpiryDate <= :date")
         List<Identity> findByDocumentExpiringBefore(@Param("date") LocalDate date);
 
         @Query("SELECT i FROM Identity i LEFT JOIN FETCH i.accounts WHERE i.id = :id")
         Optional<Identity> findByIdWithAccounts(@Param("id") UUID id);
+
+        @EntityGraph(Identity.GRAPH_MANAGER)
+        @Query("SELECT i FROM Identity i ORDER BY i.lastName, i.id")
+        List<Identity> findFirstPage(Pageable limit);
+
+        @EntityGraph(Identity.GRAPH_MANAGER)
+        @Query("SELECT i FROM Identity i " +
+                        "WHERE i.lastName > :lastName OR (i.lastName = :lastName AND i.id > :id) " +
+                        "ORDER BY i.lastName, i.id")
+        List<Identity> findPageAfter(@Param("lastName") String lastName, @Param("id") UUID id, Pageable limit);
+
+        /**
+         * Pagina ordinata per cognome che riparte dall'ultima riga letta invece di usare OFFSET
+         */
+        default List<Identity> findPage(PageCursor after, int size) {
+                return after == null
+                                ? findFirstPage(PageCursor.limit(size))
+                                : findPageAfter(after.getKey(), after.getId(), PageCursor.limit(size));
+        }
 }
@@ -0,0 +1,128 @@
+package com.betflow.repositories;
+
+import com.betflow.dto.pagination.PageCursor;
+import com.betflow.entities.OperationHistoryEntry;
+import com.betflow.enums.WithdrawalStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+@Repository
+public interface OperationHistoryRepository extends JpaRepository<OperationHistoryEntry, UUID> {
+
+    // ==================== KEYSET PAGES ====================
+
+    @Query("SELECT h FROM OperationHistoryEntry h ORDER BY h.operationDate DESC, h.id DESC")
+    List<OperationHistoryEntry> findFirstPage(Pageable limit);
+
+    @Query("SELECT h FROM OperationHistoryEntry h " +
+           "WHERE h.operationDate < :operationDate " +
+           "OR (h.operationDate = :operationDate AND h.id < :id) " +
+           "ORDER BY h.operationDate DESC, h.id DESC")
+    List<OperationHistoryEntry> findPageAfter(@Param("operationDate") LocalDateTime operationDate,
+                                              @Param("id") UUID id, Pageable limit);
+
+    @Query("SELECT h FROM OperationHistoryEntry h WHERE h.accountId = :accountId " +
+           "ORDER BY h.operationDate DESC, h.id DESC")
+    List<OperationHistoryEntry> findFirstPageByAccountId(@Param("accountId") UUID accountId, Pageable limit);
+
+    @Query("SELECT h FROM OperationHistoryEntry h " +
+           "WHERE h.accountId = :accountId AND (h.operationDate < :operationDate " +
+           "OR (h.operationDate = :operationDate AND h.id < :id)) " +
+           "ORDER BY h.operationDate DESC, h.id DESC")
+    List<OperationHistoryEntry> findPageAfterByAccountId(@Param("accountId") UUID accountId,
+                                                         @Param("operationDate") LocalDateTime operationDate,
+                                                         @Param("id") UUID id, Pageable limit);
+
+    /**
+     * Operazioni dalla più recente, eventualmente di un solo conto, ripartendo dall'ultima riga letta
+     */
+    default List<OperationHistoryEntry> findPage(UUID accountId, PageCursor after, int size) {
+        if (after == null) {
+            return accountId == null
+                    ? findFirstPage(PageCursor.limit(size))
+                    : findFirstPageByAccountId(accountId, PageCursor.limit(size));
+        }
+        LocalDateTime operationDate = after.getKeyAsDateTime();
+        return accountId == null
+                ? findPageAfter(operationDate, after.getId(), PageCursor.limit(size))
+                : findPageAfterByAccountId(accountId, operationDate, after.getId(), PageCursor.limit(size));
+    }
+
+    /**
+     * Cursore forward-only per l'export, in sola lettura. Va consumato dentro una transazione.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT h FROM OperationHistoryEntry h " +
+           "WHERE h.operationDate BETWEEN :startDate AND :endDate " +
+           "ORDER BY h.operationDate")
+    Stream<OperationHistoryEntry> streamByDateRange(
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate
+    );
+
+    // ==================== MAINTENANCE ====================
+
+    @Modifying
+    @Query("UPDATE OperationHistoryEntry h SET h.status = :status, h.arrivalDate = :arrivalDate WHERE h.id = :id")
+    int updateWithdrawal(@Param("id") UUID id,
+                         @Param("status") WithdrawalStatus status,
+                         @Param("arrivalDate") LocalDateTime arrivalDate);
+
+    @Modifying
+    @Query("UPDATE OperationHistoryEntry h SET h.accountUsername = :username WHERE h.accountId = :accountId")
+    int renameAccount(@Param("accountId") UUID accountId, @Param("username") String username);
+
+    @Modifying
+    @Query("UPDATE OperationHistoryEntry h SET h.platformName = :name WHERE h.platformId = :platformId")
+    int renamePlatform(@Param("platformId") UUID platformId, @Param("name") String name);
+
+    @Modifying
+    @Query("DELETE FROM OperationHistoryEntry h WHERE h.id = :id")
+    void deleteByOperationId(@Param("id") UUID id);
+
+    @Modifying
+    @Query("DELETE FROM OperationHistoryEntry h WHERE h.accountId = :accountId")
+    void deleteByAccountId(@Param("accountId") UUID accountId);
+
+    @Modifying
+    @Query("DELETE FROM OperationHistoryEntry h WHERE h.identityId = :identityId")
+    void deleteByIdentityId(@Param("identityId") UUID identityId);
+
+    @Modifying
+    @Query("DELETE FROM OperationHistoryEntry h WHERE h.platformId = :platformId")
+    void deleteByPlatformId(@Param("platformId") UUID platformId);
+
+    /**
+     * Ricostruisce lo storico dalle tabelle delle operazioni con un'unica INSERT ... SELECT
+     */
+    @Modifying
+    @Query(value = "INSERT INTO operation_history (id, operation_type, operation_date, amount, notes, " +
+            "account_id, account_username, identity_id, platform_id, platform_name, payment_method, " +
+            "withdrawal_status, arrival_date, event_name, odds, outcome) " +
+            "SELECT fo.id, fo.operation_type, fo.operation_date, fo.amount, fo.notes, " +
+            "a.id, a.username, a.identity_id, p.id, p.name, d.payment_method, " +
+            "w.withdrawal_status, w.arrival_date, b.event_name, b.odds, b.outcome " +
+            "FROM financial_operations fo " +
+            "JOIN accounts a ON a.id = fo.account_id " +
+            "JOIN platforms p ON p.id = a.platform_id " +
+            "LEFT JOIN deposit d ON d.id = fo.id " +
+            "LEFT JOIN withdrawal w ON w.id = fo.id " +
+            "LEFT JOIN bet_operation b ON b.id = fo.id",
+            nativeQuery = true)
+    int insertAllFromOperations();
+}
@@ -1,8 +1,12 @@
 package com.betflow.repositories;
 
+import com.betflow.dto.pagination.PageCursor;
 import com.betflow.entities.Platform;
 import com.betflow.enums.PlatformType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -19,4 +23,21 @@ public interface PlatformRepository extends JpaRepository<Platform, UUID> {
     List<Platform> findByType(PlatformType type);
 
     List<Platform> findByNameContainingIgnoreCase(String name);
+
+    @Query("SELECT p FROM Platform p ORDER BY p.name, p.id")
+    List<Platform> findFirstPage(Pageable limit);
+
+    @Query("SELECT p FROM Platform p " +
+           "WHERE p.name > :name OR (p.name = :name AND p.id > :id) " +
+           "ORDER BY p.name, p.id")
+    List<Platform> findPageAfter(@Param("name") String name, @Param("id") UUID id, Pageable limit);
+
+    /**
+     * Pagina ordinata per nome che riparte dall'ultima riga letta invece di usare OFFSET
+     */
+    default List<Platform> findPage(PageCursor after, int size) {
+        return after == null
+                ? findFirstPage(PageCursor.limit(size))
+                : findPageAfter(after.getKey(), after.getId(), PageCursor.limit(size));
+    }
 }
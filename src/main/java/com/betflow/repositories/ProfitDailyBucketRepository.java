@@ -0,0 +1,105 @@
+package com.betflow.repositories;
+
+import com.betflow.entities.ProfitDailyBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ProfitDailyBucketRepository extends JpaRepository<ProfitDailyBucket, UUID> {
+
+    String DAILY_TOTALS_SELECT = "SELECT b.bucketDate AS bucketDate, " +
+            "SUM(b.deposits) AS deposits, SUM(b.withdrawals) AS withdrawals, " +
+            "SUM(b.stakes) AS stakes, SUM(b.winnings) AS winnings " +
+            "FROM ProfitDailyBucket b ";
+
+    String DAILY_TOTALS_GROUPING = "AND b.bucketDate BETWEEN :from AND :to " +
+            "GROUP BY b.bucketDate ORDER BY b.bucketDate";
+
+    @Modifying
+    @Query("UPDATE ProfitDailyBucket b SET " +
+           "b.deposits = b.deposits + :deposits, " +
+           "b.withdrawals = b.withdrawals + :withdrawals, " +
+           "b.stakes = b.stakes + :stakes, " +
+           "b.winnings = b.winnings + :winnings " +
+           "WHERE b.accountId = :accountId AND b.bucketDate = :bucketDate")
+    int applyDelta(
+            @Param("accountId") UUID accountId,
+            @Param("bucketDate") LocalDate bucketDate,
+            @Param("deposits") BigDecimal deposits,
+            @Param("withdrawals") BigDecimal withdrawals,
+            @Param("stakes") BigDecimal stakes,
+            @Param("winnings") BigDecimal winnings
+    );
+
+    @Query(DAILY_TOTALS_SELECT + "WHERE b.identityId = :id " + DAILY_TOTALS_GROUPING)
+    List<DailyTotalsRow> findDailyTotalsByIdentity(@Param("id") UUID identityId,
+                                                   @Param("from") LocalDate from,
+                                                   @Param("to") LocalDate to);
+
+    @Query(DAILY_TOTALS_SELECT + "WHERE b.accountId = :id " + DAILY_TOTALS_GROUPING)
+    List<DailyTotalsRow> findDailyTotalsByAccount(@Param("id") UUID accountId,
+                                                  @Param("from") LocalDate from,
+                                                  @Param("to") LocalDate to);
+
+    @Query(DAILY_TOTALS_SELECT + "WHERE b.platformId = :id " + DAILY_TOTALS_GROUPING)
+    List<DailyTotalsRow> findDailyTotalsByPlatform(@Param("id") UUID platformId,
+                                                   @Param("from") LocalDate from,
+                                                   @Param("to") LocalDate to);
+
+    /**
+     * Ricalcola i bucket giornalieri direttamente dalle operazioni
+     */
+    @Query(value = "SELECT fo.account_id AS accountId, a.identity_id AS identityId, " +
+            "a.platform_id AS platformId, CAST(fo.operation_date AS DATE) AS bucketDate, " +
+            "SUM(CASE WHEN fo.operation_type = 'DEPOSIT' THEN fo.amount ELSE 0 END) AS deposits, " +
+            "SUM(CASE WHEN fo.operation_type = 'WITHDRAWAL' THEN fo.amount ELSE 0 END) AS withdrawals, " +
+            "SUM(CASE WHEN fo.operation_type = 'BET' THEN fo.amount ELSE 0 END) AS stakes, " +
+            "SUM(CASE WHEN bo.outcome = 'WIN' THEN ROUND(fo.amount * bo.odds, 2) " +
+            "WHEN bo.outcome = 'VOID' THEN fo.amount ELSE 0 END) AS winnings " +
+            "FROM financial_operations fo " +
+            "JOIN accounts a ON a.id = fo.account_id " +
+            "LEFT JOIN bet_operation bo ON bo.id = fo.id " +
+            "GROUP BY fo.account_id, a.identity_id, a.platform_id, CAST(fo.operation_date AS DATE)",
+            nativeQuery = true)
+    List<BucketSourceRow> aggregateOperationsByAccountAndDay();
+
+    @Modifying
+    @Query("DELETE FROM ProfitDailyBucket b WHERE b.accountId = :accountId")
+    void deleteByAccountId(@Param("accountId") UUID accountId);
+
+    @Modifying
+    @Query("DELETE FROM ProfitDailyBucket b WHERE b.identityId = :identityId")
+    void deleteByIdentityId(@Param("identityId") UUID identityId);
+
+    @Modifying
+    @Query("DELETE FROM ProfitDailyBucket b WHERE b.platformId = :platformId")
+    void deleteByPlatformId(@Param("platformId") UUID platformId);
+
+    interface DailyTotalsRow {
+        LocalDate getBucketDate();
+
+        BigDecimal getDeposits();
+
+        BigDecimal getWithdrawals();
+
+        BigDecimal getStakes();
+
+        BigDecimal getWinnings();
+    }
+
+    interface BucketSourceRow extends DailyTotalsRow {
+        UUID getAccountId();
+
+        UUID getIdentityId();
+
+        UUID getPlatformId();
+    }
+}
@@ -1,13 +1,19 @@
 package com.betflow.repositories;
 
+import com.betflow.dto.pagination.PageCursor;
 import com.betflow.entities.Promotion;
 import com.betflow.enums.PromotionStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -18,6 +24,29 @@ public interface PromotionRepository extends JpaRepository<Promotion, UUID> {
 
     List<Promotion> findByStatus(PromotionStatus status);
 
+    // ==================== FETCH PLANS ====================
+    // Same lists with account and platform joined, for callers that map every row
+
+    @EntityGraph(Promotion.GRAPH_ACCOUNT)
+    @Query("SELECT p FROM Promotion p")
+    List<Promotion> findAllWithAccount();
+
+    @EntityGraph(Promotion.GRAPH_ACCOUNT)
+    List<Promotion> findWithAccountByAccountId(UUID accountId);
+
+    @EntityGraph(Promotion.GRAPH_ACCOUNT)
+    List<Promotion> findWithAccountByStatus(PromotionStatus status);
+
+    @EntityGraph(Promotion.GRAPH_ACCOUNT)
+    @Query("SELECT p FROM Promotion p " +
+           "WHERE p.status = :status " +
+           "AND p.deadlineDate <= :deadlineDate " +
+           "ORDER BY p.deadlineDate ASC")
+    List<Promotion> findWithAccountExpiringWithinDays(
+            @Param("status") PromotionStatus status,
+            @Param("deadlineDate") LocalDate deadlineDate
+    );
+
     @Query("SELECT p FROM Promotion p " +
            "WHERE p.status = :status " +
            "AND p.deadlineDate <= :deadlineDate " +
@@ -39,6 +68,9 @@ public interface PromotionRepository extends JpaRepository<Promotion, UUID> {
     @Query("SELECT p FROM Promotion p WHERE p.deadlineDate = :date")
     List<Promotion> findByDeadlineDate(@Param("date") LocalDate date);
 
+    @Query("SELECT COUNT(p) FROM Promotion p WHERE p.deadlineDate = :date")
+    long countByDeadlineDate(@Param("date") LocalDate date);
+
     @Query("SELECT COUNT(p) FROM Promotion p WHERE p.status = :status")
     long countByStatus(@Param("status") PromotionStatus status);
 
@@ -47,4 +79,75 @@ public interface PromotionRepository extends JpaRepository<Promotion, UUID> {
            "JOIN FETCH a.platform " +
            "WHERE p.account.identity.id = :identityId")
     List<Promotion> findByIdentityId(@Param("identityId") UUID identityId);
+
+    @EntityGraph(Promotion.GRAPH_ACCOUNT)
+    @Query("SELECT p FROM Promotion p ORDER BY p.id")
+    List<Promotion> findFirstPage(Pageable limit);
+
+    @EntityGraph(Promotion.GRAPH_ACCOUNT)
+    @Query("SELECT p FROM Promotion p WHERE p.id > :id ORDER BY p.id")
+    List<Promotion> findPageAfter(@Param("id") UUID id, Pageable limit);
+
+    /**
+     * Pagina ordinata per id (la scadenza può mancare e non è una chiave di ordinamento stabile)
+     */
+    default List<Promotion> findPage(PageCursor after, int size) {
+        return after == null
+                ? findFirstPage(PageCursor.limit(size))
+                : findPageAfter(after.getId(), PageCursor.limit(size));
+    }
+
+    // ==================== ROLLOVER ACCRUAL ====================
+
+    /**
+     * Aggiunge una puntata qualificante al rollover delle promozioni attive del conto
+     * che accettano le quote indicate, con un incremento nel database
+     */
+    @Modifying
+    @Query("UPDATE Promotion p SET p.rolloverDone = COALESCE(p.rolloverDone, 0) + :amount, " +
+           "p.version = p.version + 1 " +
+           "WHERE p.account.id = :accountId AND p.status = :status " +
+           "AND (p.minOdds IS NULL OR p.minOdds <= :odds)")
+    int addToRollover(@Param("accountId") UUID accountId,
+                      @Param("status") PromotionStatus status,
+                      @Param("odds") BigDecimal odds,
+                      @Param("amount") BigDecimal amount);
+
+    /**
+     * Toglie la puntata di una scommessa eliminata dal rollover delle stesse promozioni, senza scendere sotto zero
+     */
+    @Modifying
+    @Query("UPDATE Promotion p SET p.rolloverDone = CASE WHEN COALESCE(p.rolloverDone, 0) > :amount " +
+           "THEN p.rolloverDone - :amount ELSE 0 END, " +
+           "p.version = p.version + 1 " +
+           "WHERE p.account.id = :accountId AND p.status = :status " +
+           "AND (p.minOdds IS NULL OR p.minOdds <= :odds)")
+    int subtractFromRollover(@Param("accountId") UUID accountId,
+                             @Param("status") PromotionStatus status,
+                             @Param("odds") BigDecimal odds,
+                             @Param("amount") BigDecimal amount);
+
+    // Same completion rule as PromotionService.checkAndUpdateStatus, for all ACTIVE promotions of the accounts
+    @Modifying
+    @Query("UPDATE Promotion p SET p.status = :completed, p.version = p.version + 1 " +
+           "WHERE p.account.id IN :accountIds AND p.status = :status " +
+           "AND p.rolloverTarget IS NOT NULL AND p.rolloverDone >= p.rolloverTarget")
+    int completeReachedRollovers(@Param("accountIds") Collection<UUID> accountIds,
+                                 @Param("status") PromotionStatus status,
+                                 @Param("completed") PromotionStatus completed);
+
+    // ==================== BULK EXPIRY ====================
+
+    /**
+     * Porta a EXPIRED fino a limit promozioni attive scadute prima di today con un'unica UPDATE
+     * e restituisce gli id delle righe modificate. Da chiamare in transazione.
+     * UPDATE ... RETURNING è sintassi PostgreSQL.
+     */
+    // The outer status check is re-evaluated on rows changed concurrently, so RETURNING lists only the
+    // promotions this statement flipped. The version bump makes stale optimistic writes fail.
+    @Query(value = "UPDATE promotions SET status = 'EXPIRED', version = version + 1 " +
+                   "WHERE status = 'ACTIVE' AND id IN (SELECT id FROM promotions " +
+                   "WHERE status = 'ACTIVE' AND deadline_date < :today ORDER BY id LIMIT :limit) " +
+                   "RETURNING id", nativeQuery = true)
+    List<UUID> expireOverdue(@Param("today") LocalDate today, @Param("limit") int limit);
 }
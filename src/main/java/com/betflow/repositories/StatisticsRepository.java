@@ -0,0 +1,143 @@
+package com.betflow.repositories;
+
+import com.betflow.entities.Identity;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Query aggregate che attraversano piu' tabelle (identita', conti, operazioni)
+ * e restituiscono direttamente i totali, senza caricare le entita'.
+ */
+@org.springframework.stereotype.Repository
+public interface StatisticsRepository extends Repository<Identity, UUID> {
+
+    String IDENTITY_PROFIT_SELECT = "SELECT i.id AS identityId, i.first_name AS firstName, i.last_name AS lastName, " +
+            "COALESCE(ops.total_deposits, 0) AS totalDeposits, " +
+            "COALESCE(ops.total_withdrawals, 0) AS totalWithdrawals, " +
+            "COALESCE(acc.total_balance, 0) AS totalCurrentBalance, " +
+            "COALESCE(acc.accounts_count, 0) AS totalAccounts, " +
+            "COALESCE(ops.total_withdrawals, 0) + COALESCE(acc.total_balance, 0) " +
+            "- COALESCE(ops.total_deposits, 0) AS netProfit " +
+            "FROM identities i " +
+            "LEFT JOIN (SELECT a.identity_id, SUM(a.current_balance) AS total_balance, " +
+            "COUNT(*) AS accounts_count FROM accounts a GROUP BY a.identity_id) acc " +
+            "ON acc.identity_id = i.id " +
+            "LEFT JOIN (SELECT a.identity_id, " +
+            "SUM(CASE WHEN fo.operation_type = 'DEPOSIT' THEN fo.amount ELSE 0 END) AS total_deposits, " +
+            "SUM(CASE WHEN fo.operation_type = 'WITHDRAWAL' THEN fo.amount ELSE 0 END) AS total_withdrawals " +
+            "FROM financial_operations fo JOIN accounts a ON a.id = fo.account_id " +
+            "GROUP BY a.identity_id) ops ON ops.identity_id = i.id ";
+
+    /**
+     * Depositi, prelievi, saldo, numero conti e profitto netto di ogni identita'
+     * in un'unica query, ordinati per profitto netto decrescente.
+     */
+    @Query(value = IDENTITY_PROFIT_SELECT + "ORDER BY netProfit DESC", nativeQuery = true)
+    List<IdentityProfitRow> findAllIdentityProfits();
+
+    /**
+     * Le prime identita' per profitto netto: ordinamento e limite sono applicati dal database
+     */
+    @Query(value = IDENTITY_PROFIT_SELECT + "ORDER BY netProfit DESC LIMIT :limit", nativeQuery = true)
+    List<IdentityProfitRow> findTopIdentityProfits(@Param("limit") int limit);
+
+    /**
+     * Stessi totali calcolati dalle tabelle sorgente per una sola identita'
+     */
+    @Query(value = IDENTITY_PROFIT_SELECT + "WHERE i.id = :identityId", nativeQuery = true)
+    Optional<IdentityProfitRow> findIdentityProfit(@Param("identityId") UUID identityId);
+
+    /**
+     * Tutti i contatori e i totali della dashboard in un'unica istruzione:
+     * ogni tabella viene letta una sola volta con aggregati condizionali.
+     */
+    @Query(value = "SELECT idn.total_identities AS totalIdentities, " +
+            "idn.expiring_documents AS expiringDocuments, " +
+            "acc.total_accounts AS totalAccounts, acc.active_accounts AS activeAccounts, " +
+            "acc.limited_accounts AS limitedAccounts, acc.total_balance AS totalCurrentBalance, " +
+            "plt.total_platforms AS totalPlatforms, " +
+            "ops.total_deposits AS totalDeposits, ops.total_withdrawals AS totalWithdrawals, " +
+            "prm.active_promotions AS activePromotions, prm.completed_promotions AS completedPromotions, " +
+            "prm.expired_promotions AS expiredPromotions, prm.expiring_promotions AS expiringPromotions " +
+            "FROM (SELECT COUNT(*) AS total_identities, " +
+            "COUNT(CASE WHEN i.document_expiry_date BETWEEN :today AND :expiryLimit THEN 1 END) AS expiring_documents " +
+            "FROM identities i) idn " +
+            "CROSS JOIN (SELECT COUNT(*) AS total_accounts, " +
+            "COUNT(CASE WHEN a.is_active = true THEN 1 END) AS active_accounts, " +
+            "COUNT(CASE WHEN a.is_limited = true THEN 1 END) AS limited_accounts, " +
+            "COALESCE(SUM(a.current_balance), 0) AS total_balance " +
+            "FROM accounts a) acc " +
+            "CROSS JOIN (SELECT COUNT(*) AS total_platforms FROM platforms) plt " +
+            "CROSS JOIN (SELECT " +
+            "COALESCE(SUM(CASE WHEN fo.operation_type = 'DEPOSIT' THEN fo.amount END), 0) AS total_deposits, " +
+            "COALESCE(SUM(CASE WHEN fo.operation_type = 'WITHDRAWAL' THEN fo.amount END), 0) AS total_withdrawals " +
+            "FROM financial_operations fo) ops " +
+            "CROSS JOIN (SELECT " +
+            "COUNT(CASE WHEN p.status = 'ACTIVE' THEN 1 END) AS active_promotions, " +
+            "COUNT(CASE WHEN p.status = 'COMPLETED' THEN 1 END) AS completed_promotions, " +
+            "COUNT(CASE WHEN p.status = 'EXPIRED' THEN 1 END) AS expired_promotions, " +
+            "COUNT(CASE WHEN p.status = 'ACTIVE' AND p.deadline_date <= :expiryLimit THEN 1 END) AS expiring_promotions " +
+            "FROM promotions p) prm",
+            nativeQuery = true)
+    DashboardTotalsRow findDashboardTotals(@Param("today") LocalDate today,
+                                           @Param("expiryLimit") LocalDate expiryLimit);
+
+    /**
+     * Riga restituita dalla query dei totali della dashboard
+     */
+    interface DashboardTotalsRow {
+        Long getTotalIdentities();
+
+        Long getTotalAccounts();
+
+        Long getActiveAccounts();
+
+        Long getLimitedAccounts();
+
+        Long getTotalPlatforms();
+
+        BigDecimal getTotalDeposits();
+
+        BigDecimal getTotalWithdrawals();
+
+        BigDecimal getTotalCurrentBalance();
+
+        Long getActivePromotions();
+
+        Long getCompletedPromotions();
+
+        Long getExpiredPromotions();
+
+        Long getExpiringDocuments();
+
+        Long getExpiringPromotions();
+    }
+
+    /**
+     * Riga restituita dalle query di profitto per identita'
+     */
+    interface IdentityProfitRow {
+        UUID getIdentityId();
+
+        String getFirstName();
+
+        String getLastName();
+
+        BigDecimal getTotalDeposits();
+
+        BigDecimal getTotalWithdrawals();
+
+        BigDecimal getTotalCurrentBalance();
+
+        Long getTotalAccounts();
+
+        BigDecimal getNetProfit();
+    }
+}
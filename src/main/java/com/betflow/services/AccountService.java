@@ -1,23 +1,32 @@
 package com.betflow.services;
 
 import com.betflow.dto.account.AccountDTO;
+import com.betflow.dto.pagination.CursorPageDTO;
+import com.betflow.dto.pagination.PageCursor;
 import com.betflow.entities.Account;
 import com.betflow.entities.Identity;
 import com.betflow.entities.Platform;
+import com.betflow.events.DomainDataChangedEvent;
+import com.betflow.events.OpenBetsChangedEvent;
 import com.betflow.exceptions.BadRequestException;
 import com.betflow.exceptions.DuplicateResourceException;
 import com.betflow.exceptions.ResourceNotFoundException;
 import com.betflow.repositories.AccountRepository;
+import com.betflow.repositories.AccountRepository.AccountCountsRow;
+import com.betflow.repositories.FinancialOperationRepository;
 import com.betflow.repositories.IdentityRepository;
 import com.betflow.repositories.PlatformRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,11 +37,25 @@ public class AccountService {
     private final AccountRepository accountRepository;
     private final IdentityRepository identityRepository;
     private final PlatformRepository platformRepository;
+    private final FinancialOperationRepository financialOperationRepository;
+    private final LedgerRollupService ledgerRollupService;
+    private final ProfitTimeSeriesService profitTimeSeriesService;
+    private final OperationHistoryService operationHistoryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ConcurrencyRetryService concurrencyRetryService;
 
     public List<AccountDTO> getAllAccounts() {
-        return accountRepository.findAll().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        return mapToDTOs(accountRepository.findAllWithDetails());
+    }
+
+    /**
+     * Pagina di conti ordinati per username; cursor è il token restituito dalla pagina precedente
+     */
+    public CursorPageDTO<AccountDTO> getAccountsPage(String cursor, Integer size) {
+        int pageSize = PageCursor.pageSize(size);
+        List<Account> accounts = accountRepository.findPage(PageCursor.decode(cursor), pageSize);
+        return PageCursor.toPage(accounts, pageSize,
+                account -> new PageCursor(account.getUsername(), account.getId()), mapper(accounts));
     }
 
     public AccountDTO getAccountById(UUID id) {
@@ -42,27 +65,19 @@ public class AccountService {
     }
 
     public List<AccountDTO> getAccountsByIdentity(UUID identityId) {
-        return accountRepository.findByIdentityId(identityId).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        return mapToDTOs(accountRepository.findWithDetailsByIdentityId(identityId));
     }
 
     public List<AccountDTO> getAccountsByPlatform(UUID platformId) {
-        return accountRepository.findByPlatformId(platformId).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        return mapToDTOs(accountRepository.findWithDetailsByPlatformId(platformId));
     }
 
     public List<AccountDTO> getActiveAccounts() {
-        return accountRepository.findByIsActiveTrue().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        return mapToDTOs(accountRepository.findWithDetailsByIsActiveTrue());
     }
 
     public List<AccountDTO> getLimitedAccounts() {
-        return accountRepository.findByIsLimitedTrue().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        return mapToDTOs(accountRepository.findWithDetailsByIsLimitedTrue());
     }
 
     @Transactional
@@ -79,27 +94,35 @@ public class AccountService {
         Platform platform = platformRepository.findById(dto.getPlatformId())
                 .orElseThrow(() -> new ResourceNotFoundException("Platform not found with ID: " + dto.getPlatformId()));
 
+        BigDecimal openingBalance = dto.getCurrentBalance() != null ? dto.getCurrentBalance() : BigDecimal.ZERO;
         Account account = Account.builder()
                 .username(dto.getUsername())
                 .password(dto.getPassword())
-                .currentBalance(dto.getCurrentBalance() != null ? dto.getCurrentBalance() : BigDecimal.ZERO)
+                .currentBalance(openingBalance)
+                .openingBalance(openingBalance)
                 .identity(identity)
                 .platform(platform)
                 .build();
 
         Account savedAccount = accountRepository.save(account);
+        ledgerRollupService.recordAccountCreated(identity.getId(), savedAccount.getCurrentBalance());
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Account"));
         log.info("Account created: {} on {}", savedAccount.getUsername(), platform.getName());
         return mapToDTO(savedAccount);
     }
 
-    @Transactional
     public AccountDTO updateAccount(UUID id, AccountDTO dto) {
+        return concurrencyRetryService.execute("updateAccount", () -> doUpdateAccount(id, dto));
+    }
+
+    private AccountDTO doUpdateAccount(UUID id, AccountDTO dto) {
         log.debug("Updating account {} with data: {}", id, dto);
         Account account = accountRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "id", id));
 
-        if (dto.getUsername() != null) {
+        if (dto.getUsername() != null && !dto.getUsername().equals(account.getUsername())) {
             account.setUsername(dto.getUsername());
+            operationHistoryService.renameAccount(id, dto.getUsername());
         }
 
         if (dto.getPassword() != null) {
@@ -107,6 +130,8 @@ public class AccountService {
         }
 
         if (dto.getCurrentBalance() != null) {
+            ledgerRollupService.recordBalanceChange(account.getIdentity().getId(),
+                    dto.getCurrentBalance().subtract(account.getCurrentBalance()));
             account.setCurrentBalance(dto.getCurrentBalance());
         }
 
@@ -119,12 +144,16 @@ public class AccountService {
         }
 
         Account savedAccount = accountRepository.save(account);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Account"));
         log.info("Account updated: {}", savedAccount.getId());
         return mapToDTO(savedAccount);
     }
 
-    @Transactional
     public AccountDTO updateBalance(UUID id, BigDecimal newBalance) {
+        return concurrencyRetryService.execute("updateBalance", () -> doUpdateBalance(id, newBalance));
+    }
+
+    private AccountDTO doUpdateBalance(UUID id, BigDecimal newBalance) {
         if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
             throw new BadRequestException("Balance cannot be negative");
         }
@@ -132,8 +161,11 @@ public class AccountService {
         Account account = accountRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "id", id));
 
+        ledgerRollupService.recordBalanceChange(account.getIdentity().getId(),
+                newBalance.subtract(account.getCurrentBalance()));
         account.setCurrentBalance(newBalance);
         Account savedAccount = accountRepository.save(account);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Account"));
         log.info("Account balance updated: {} -> {}", savedAccount.getId(), newBalance);
         return mapToDTO(savedAccount);
     }
@@ -143,7 +175,15 @@ public class AccountService {
         Account account = accountRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "id", id));
 
+        ledgerRollupService.recordAccountDeleted(account.getIdentity().getId(), account.getCurrentBalance(),
+                financialOperationRepository.sumDepositsByAccountId(id),
+                financialOperationRepository.sumWithdrawalsByAccountId(id));
+        profitTimeSeriesService.removeAccount(id);
+        operationHistoryService.removeAccount(id);
         accountRepository.delete(account);
+        // Open bets of the deleted account go with it in cascade
+        eventPublisher.publishEvent(OpenBetsChangedEvent.accountsRemoved(List.of(id)));
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Account"));
         log.info("Account deleted: {}", account.getUsername());
     }
 
@@ -157,6 +197,33 @@ public class AccountService {
     }
 
     private AccountDTO mapToDTO(Account account) {
+        return mapper(List.of(account)).apply(account);
+    }
+
+    private List<AccountDTO> mapToDTOs(List<Account> accounts) {
+        return accounts.stream().map(mapper(accounts)).toList();
+    }
+
+    /**
+     * Mapper per una lista di conti: i conteggi di promozioni e operazioni
+     * sono letti con una sola query per tutta la lista
+     */
+    private Function<Account, AccountDTO> mapper(List<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return account -> mapToDTO(account, 0, 0);
+        }
+        List<UUID> ids = accounts.stream().map(Account::getId).toList();
+        Map<UUID, AccountCountsRow> counts = AccountRepository.countByIds(ids, accountRepository::countChildrenByAccountIds)
+                .stream().collect(Collectors.toMap(AccountCountsRow::getId, Function.identity()));
+        return account -> {
+            AccountCountsRow row = counts.get(account.getId());
+            return row != null
+                    ? mapToDTO(account, row.getPromotions().intValue(), row.getOperations().intValue())
+                    : mapToDTO(account, 0, 0);
+        };
+    }
+
+    private AccountDTO mapToDTO(Account account, int promotionsCount, int operationsCount) {
         return AccountDTO.builder()
                 .id(account.getId())
                 .username(account.getUsername())
@@ -167,8 +234,8 @@ public class AccountService {
                 .identityFullName(account.getIdentity().getFullName())
                 .platformId(account.getPlatform().getId())
                 .platformName(account.getPlatform().getName())
-                .promotionsCount(account.getPromotions() != null ? account.getPromotions().size() : 0)
-                .operationsCount(account.getFinancialOperations() != null ? account.getFinancialOperations().size() : 0)
+                .promotionsCount(promotionsCount)
+                .operationsCount(operationsCount)
                 .build();
     }
 }
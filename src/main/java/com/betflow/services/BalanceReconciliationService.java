@@ -0,0 +1,326 @@
+package com.betflow.services;
+
+import com.betflow.dto.admin.BalanceDriftDTO;
+import com.betflow.dto.admin.ReconciliationReportDTO;
+import com.betflow.enums.BetOutcome;
+import com.betflow.enums.ReconciliationStatus;
+import com.betflow.money.Money;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Riconciliazione dei saldi: per ogni conto rigioca depositi, prelievi, puntate e vincite
+ * a partire dal saldo di apertura e confronta il risultato con il saldo memorizzato.
+ * I conti sono divisi in partizioni per intervallo di id, elaborate in parallelo; le operazioni
+ * di una partizione arrivano con un cursore e vengono sommate al volo, senza caricarle in memoria.
+ */
+@Service
+@Slf4j
+public class BalanceReconciliationService {
+
+    private static final String ACCOUNT_BOUNDS_SQL = "SELECT id FROM accounts ORDER BY id";
+    private static final String ACCOUNTS_SQL =
+            "SELECT id, username, identity_id, current_balance, opening_balance FROM accounts WHERE id >= ?";
+    private static final String OPERATIONS_SQL =
+            "SELECT fo.account_id, fo.operation_type, fo.amount, b.odds, b.outcome " +
+            "FROM financial_operations fo LEFT JOIN bet_operation b ON b.id = fo.id " +
+            "WHERE fo.account_id >= ?";
+    private static final int FETCH_SIZE = 1000;
+    // Same crediting rule as the write paths and the replay: a settled bet returns its payout rounded to cents
+    private static final String BACKFILL_OPENING_BALANCE_SQL =
+            "UPDATE accounts a SET opening_balance = a.current_balance - COALESCE((" +
+            "SELECT SUM(CASE fo.operation_type WHEN 'DEPOSIT' THEN fo.amount " +
+            "WHEN 'WITHDRAWAL' THEN -fo.amount " +
+            "ELSE CASE b.outcome WHEN 'WIN' THEN ROUND(fo.amount * b.odds, 2) - fo.amount " +
+            "WHEN 'VOID' THEN 0 ELSE -fo.amount END END) " +
+            "FROM financial_operations fo LEFT JOIN bet_operation b ON b.id = fo.id " +
+            "WHERE fo.account_id = a.id), 0) " +
+            "WHERE a.opening_balance IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final ExecutorService coordinator;
+    private final int parallelism;
+    private final int partitionSize;
+    private final int maxDrifts;
+    private final Money tolerance;
+
+    private volatile ReconciliationReportDTO latest;
+
+    public BalanceReconciliationService(JdbcTemplate jdbcTemplate,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${betflow.reconciliation.parallelism:0}") int parallelism,
+                                        @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                                        @Value("${betflow.reconciliation.partition-size:1000}") int partitionSize,
+                                        @Value("${betflow.reconciliation.max-drifts:1000}") int maxDrifts,
+                                        @Value("${betflow.reconciliation.tolerance:0.01}") BigDecimal tolerance) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Accounts and operations of a partition are read from the same snapshot, concurrent writes are not drift
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.coordinator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-reconciliation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Every running partition holds a pooled connection: at most half the pool, the rest serves requests
+        int requested = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.parallelism = Math.max(1, Math.min(requested, poolSize / 2));
+        if (this.parallelism < requested) {
+            log.warn("Reconciliation parallelism capped at {} for a pool of {} connections", this.parallelism, poolSize);
+        }
+        this.partitionSize = partitionSize;
+        this.maxDrifts = maxDrifts;
+        this.tolerance = Money.of(tolerance, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Avvia una riconciliazione in background; se ce n'è già una in corso restituisce quella
+     */
+    public synchronized ReconciliationReportDTO start() {
+        if (latest != null && latest.getStatus() == ReconciliationStatus.RUNNING) {
+            return latest;
+        }
+        ReconciliationReportDTO running = ReconciliationReportDTO.builder()
+                .status(ReconciliationStatus.RUNNING)
+                .startedAt(LocalDateTime.now())
+                .parallelism(parallelism)
+                .build();
+        latest = running;
+        coordinator.submit(() -> {
+            latest = run(running.getStartedAt());
+        });
+        return running;
+    }
+
+    /**
+     * I conti creati prima del saldo di apertura lo ricevono una volta, ricavato dal saldo attuale
+     * meno le operazioni registrate: la riconciliazione misura la deriva da quel momento in poi
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOpeningBalances() {
+        int updated = jdbcTemplate.update(BACKFILL_OPENING_BALANCE_SQL);
+        if (updated > 0) {
+            log.info("Opening balance backfilled for {} accounts", updated);
+        }
+    }
+
+    /**
+     * Ultimo report (null se non è mai stata eseguita una riconciliazione)
+     */
+    public ReconciliationReportDTO getLatest() {
+        return latest;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+    }
+
+    private ReconciliationReportDTO run(LocalDateTime startedAt) {
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<UUID> bounds = partitionBounds();
+            // A parallel stream submitted to its own pool runs on that pool's workers, not the common one
+            List<PartitionResult> results = pool.submit(() -> IntStream.range(0, bounds.size()).parallel()
+                    .mapToObj(i -> replayPartition(bounds.get(i), i + 1 < bounds.size() ? bounds.get(i + 1) : null))
+                    .toList()).get();
+
+            ReconciliationReportDTO report = merge(results);
+            long durationMs = System.currentTimeMillis() - start;
+            report.setStatus(ReconciliationStatus.COMPLETED);
+            report.setStartedAt(startedAt);
+            report.setFinishedAt(LocalDateTime.now());
+            report.setDurationMs(durationMs);
+            report.setParallelism(parallelism);
+            report.setPartitions(bounds.size());
+            report.setOperationsPerSecond(durationMs > 0 ? report.getOperationsReplayed() * 1000 / durationMs : 0);
+
+            log.info("Balance reconciliation: {} accounts, {} operations in {} ms, {} accounts drifting",
+                    report.getAccountsScanned(), report.getOperationsReplayed(), durationMs,
+                    report.getAccountsWithDrift());
+            return report;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(startedAt, start, e);
+        } catch (ExecutionException | RuntimeException e) {
+            log.error("Balance reconciliation failed", e);
+            return failed(startedAt, start, e instanceof ExecutionException ? e.getCause() : e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Primo id di ogni partizione, nell'ordine del database (lo stesso usato dai confronti >= e <)
+     */
+    private List<UUID> partitionBounds() {
+        List<UUID> bounds = new ArrayList<>();
+        int[] row = {0};
+        jdbcTemplate.query(ACCOUNT_BOUNDS_SQL, rs -> {
+            if (row[0]++ % partitionSize == 0) {
+                bounds.add(rs.getObject(1, UUID.class));
+            }
+        });
+        return bounds;
+    }
+
+    private PartitionResult replayPartition(UUID from, UUID to) {
+        String range = to != null ? " AND %s < ?" : "";
+        Object[] params = to != null ? new Object[]{from, to} : new Object[]{from};
+
+        return snapshotTransaction.execute(status -> {
+            Map<UUID, AccountReplay> accounts = new HashMap<>();
+            jdbcTemplate.query(ACCOUNTS_SQL + range.formatted("id"), rs -> {
+                AccountReplay replay = new AccountReplay(rs);
+                accounts.put(replay.accountId, replay);
+            }, params);
+
+            long[] operations = {0};
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(OPERATIONS_SQL + range.formatted("fo.account_id"));
+                ps.setFetchSize(FETCH_SIZE);
+                for (int i = 0; i < params.length; i++) {
+                    ps.setObject(i + 1, params[i]);
+                }
+                return ps;
+            }, rs -> {
+                AccountReplay replay = accounts.get(rs.getObject(1, UUID.class));
+                if (replay != null) {
+                    replay.apply(rs);
+                    operations[0]++;
+                }
+            });
+
+            PartitionResult result = new PartitionResult(accounts.size(), operations[0], new ArrayList<>());
+            accounts.values().stream()
+                    .filter(replay -> Math.abs(replay.difference().cents()) > tolerance.cents())
+                    .map(AccountReplay::toDrift)
+                    .forEach(result.drifts()::add);
+            return result;
+        });
+    }
+
+    private ReconciliationReportDTO merge(List<PartitionResult> results) {
+        List<BalanceDriftDTO> drifts = new ArrayList<>();
+        long accounts = 0;
+        long operations = 0;
+        for (PartitionResult result : results) {
+            accounts += result.accounts();
+            operations += result.operations();
+            drifts.addAll(result.drifts());
+        }
+        drifts.sort(Comparator.comparing((BalanceDriftDTO drift) -> drift.getDifference().abs()).reversed());
+
+        return ReconciliationReportDTO.builder()
+                .accountsScanned(accounts)
+                .operationsReplayed(operations)
+                .accountsWithDrift(drifts.size())
+                .totalDifference(drifts.stream()
+                        .map(BalanceDriftDTO::getDifference)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add))
+                .drifts(drifts.size() > maxDrifts ? new ArrayList<>(drifts.subList(0, maxDrifts)) : drifts)
+                .driftsTruncated(drifts.size() > maxDrifts)
+                .build();
+    }
+
+    private ReconciliationReportDTO failed(LocalDateTime startedAt, long start, Throwable cause) {
+        return ReconciliationReportDTO.builder()
+                .status(ReconciliationStatus.FAILED)
+                .startedAt(startedAt)
+                .finishedAt(LocalDateTime.now())
+                .durationMs(System.currentTimeMillis() - start)
+                .parallelism(parallelism)
+                .error(cause.getMessage())
+                .build();
+    }
+
+    private record PartitionResult(long accounts, long operations, List<BalanceDriftDTO> drifts) {
+    }
+
+    /**
+     * Saldo di un conto ricostruito operazione per operazione, in centesimi
+     */
+    private static class AccountReplay {
+        private final UUID accountId;
+        private final String username;
+        private final UUID identityId;
+        private final Money storedBalance;
+        private final Money openingBalance;
+        private Money balance;
+        private long operations;
+
+        AccountReplay(ResultSet rs) throws SQLException {
+            accountId = rs.getObject("id", UUID.class);
+            username = rs.getString("username");
+            identityId = rs.getObject("identity_id", UUID.class);
+            storedBalance = Money.of(rs.getBigDecimal("current_balance"));
+            openingBalance = Money.of(rs.getBigDecimal("opening_balance"));
+            balance = openingBalance;
+        }
+
+        void apply(ResultSet rs) throws SQLException {
+            String type = rs.getString(2);
+            Money amount = Money.of(rs.getBigDecimal(3));
+            operations++;
+
+            if ("DEPOSIT".equals(type)) {
+                balance = balance.plus(amount);
+            } else if ("WITHDRAWAL".equals(type)) {
+                balance = balance.minus(amount);
+            } else if ("BET".equals(type)) {
+                String outcome = rs.getString(5);
+                // The balance column keeps two decimals, as every stored payout does
+                Money payout = outcome != null
+                        ? BetSettlementService.payout(amount, rs.getBigDecimal(4), BetOutcome.valueOf(outcome))
+                        : Money.ZERO;
+                balance = balance.minus(amount).plus(payout);
+            }
+        }
+
+        Money difference() {
+            return storedBalance.minus(balance);
+        }
+
+        BalanceDriftDTO toDrift() {
+            return BalanceDriftDTO.builder()
+                    .accountId(accountId)
+                    .accountUsername(username)
+                    .identityId(identityId)
+                    .openingBalance(openingBalance.toBigDecimal())
+                    .storedBalance(storedBalance.toBigDecimal())
+                    .replayedBalance(balance.toBigDecimal())
+                    .difference(difference().toBigDecimal())
+                    .operations(operations)
+                    .build();
+        }
+    }
+}
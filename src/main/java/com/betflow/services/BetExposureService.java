@@ -0,0 +1,204 @@
+package com.betflow.services;
+
+import com.betflow.dto.statistics.ExposureDTO;
+import com.betflow.events.OpenBetsChangedEvent;
+import com.betflow.events.OpenBetsChangedEvent.OpenBet;
+import com.betflow.repositories.FinancialOperationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Esposizione delle scommesse aperte (puntata e vincita potenziale) per conto, identità ed evento.
+ * L'indice in memoria viene caricato all'avvio e aggiornato dopo il commit di ogni scrittura
+ * sulle scommesse, così le letture non scorrono mai le scommesse aperte.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BetExposureService {
+
+    // Listeners of different transactions can run out of order, a late open must still find the close
+    private static final Duration CLOSED_RETENTION = Duration.ofMinutes(10);
+
+    private final FinancialOperationRepository financialOperationRepository;
+
+    // Writers apply events under the read lock; the startup seed takes the write lock until the new index is in place
+    private final ReadWriteLock seedLock = new ReentrantReadWriteLock();
+    private volatile ExposureIndex index = new ExposureIndex();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        seedLock.writeLock().lock();
+        try {
+            long start = System.currentTimeMillis();
+            ExposureIndex seeded = new ExposureIndex();
+            financialOperationRepository.findAllPendingBetRows().forEach(row -> seeded.open(new OpenBet(
+                    row.getBetId(), row.getAccountId(), row.getIdentityId(), row.getEventName(),
+                    row.getAmount(), row.getOdds())));
+            index = seeded;
+            log.info("Bet exposure index loaded: {} open bets in {} ms",
+                    seeded.total.get().openBets(), System.currentTimeMillis() - start);
+        } finally {
+            seedLock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOpenBetsChanged(OpenBetsChangedEvent event) {
+        seedLock.readLock().lock();
+        try {
+            ExposureIndex current = index;
+            event.getOpened().forEach(current::open);
+            event.getClosedBetIds().forEach(current::close);
+            if (!event.getRemovedAccountIds().isEmpty()) {
+                current.removeAccounts(Set.copyOf(event.getRemovedAccountIds()));
+            }
+        } finally {
+            seedLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Dimentica le scommesse chiuse da più di CLOSED_RETENTION: un'apertura in ritardo oltre
+     * quel margine non è attesa, gli eventi arrivano subito dopo il commit
+     */
+    @Scheduled(fixedDelayString = "${betflow.exposure.prune-interval-ms:60000}")
+    public void pruneClosedBets() {
+        index.pruneClosed(System.currentTimeMillis() - CLOSED_RETENTION.toMillis());
+    }
+
+    public ExposureDTO getAccountExposure(UUID accountId) {
+        return toDTO("ACCOUNT", accountId.toString(), index.byAccount.get(accountId));
+    }
+
+    public ExposureDTO getIdentityExposure(UUID identityId) {
+        return toDTO("IDENTITY", identityId.toString(), index.byIdentity.get(identityId));
+    }
+
+    public ExposureDTO getEventExposure(String eventName) {
+        return toDTO("EVENT", eventName, index.byEvent.get(eventName));
+    }
+
+    public ExposureDTO getTotalExposure() {
+        return toDTO("TOTAL", null, index.total.get());
+    }
+
+    private ExposureDTO toDTO(String scope, String key, ExposureTotals totals) {
+        ExposureTotals value = totals != null ? totals : ExposureTotals.EMPTY;
+        return ExposureDTO.builder()
+                .scope(scope)
+                .key(key)
+                .openBets(value.openBets())
+                .openStake(value.openStake())
+                .potentialPayout(value.potentialPayout())
+                .build();
+    }
+
+    /**
+     * Scommessa aperta nell'indice, con puntata e vincita potenziale già arrotondate ai centesimi,
+     * oppure segnaposto di una scommessa chiusa (closedAt > 0)
+     */
+    private record IndexedBet(UUID accountId, UUID identityId, String eventName,
+                              BigDecimal stake, BigDecimal payout, long closedAt) {
+        static IndexedBet of(OpenBet bet) {
+            BigDecimal stake = bet.stake().setScale(2, RoundingMode.HALF_UP);
+            return new IndexedBet(bet.accountId(), bet.identityId(), bet.eventName(),
+                    stake, stake.multiply(bet.odds()).setScale(2, RoundingMode.HALF_UP), 0);
+        }
+
+        static IndexedBet closed(long at) {
+            return new IndexedBet(null, null, null, BigDecimal.ZERO, BigDecimal.ZERO, at);
+        }
+
+        boolean isOpen() {
+            return closedAt == 0;
+        }
+    }
+
+    private record ExposureTotals(long openBets, BigDecimal openStake, BigDecimal potentialPayout) {
+        static final ExposureTotals EMPTY = new ExposureTotals(0, BigDecimal.ZERO, BigDecimal.ZERO);
+
+        ExposureTotals add(IndexedBet bet, int sign) {
+            return sign > 0
+                    ? new ExposureTotals(openBets + 1, openStake.add(bet.stake()), potentialPayout.add(bet.payout()))
+                    : new ExposureTotals(openBets - 1, openStake.subtract(bet.stake()),
+                    potentialPayout.subtract(bet.payout()));
+        }
+    }
+
+    /**
+     * Scommesse aperte per id e totali per chiave. Aprire o chiudere due volte la stessa scommessa
+     * non cambia i totali, quindi un evento già compreso nel caricamento iniziale non viene contato due volte.
+     * Una scommessa chiusa resta come segnaposto, così un'apertura arrivata dopo la chiusura viene ignorata.
+     */
+    private static class ExposureIndex {
+        private final Map<UUID, IndexedBet> bets = new ConcurrentHashMap<>();
+        private final Map<UUID, ExposureTotals> byAccount = new ConcurrentHashMap<>();
+        private final Map<UUID, ExposureTotals> byIdentity = new ConcurrentHashMap<>();
+        private final Map<String, ExposureTotals> byEvent = new ConcurrentHashMap<>();
+        private final AtomicReference<ExposureTotals> total = new AtomicReference<>(ExposureTotals.EMPTY);
+
+        void open(OpenBet bet) {
+            IndexedBet indexed = IndexedBet.of(bet);
+            // Fails on an open bet as well as on the placeholder of a closed one
+            if (bets.putIfAbsent(bet.betId(), indexed) == null) {
+                update(indexed, 1);
+            }
+        }
+
+        void close(UUID betId) {
+            IndexedBet bet = bets.put(betId, IndexedBet.closed(System.currentTimeMillis()));
+            if (bet != null && bet.isOpen()) {
+                update(bet, -1);
+            }
+        }
+
+        /**
+         * Chiude le scommesse aperte dei conti eliminati; le chiavi rimaste a zero spariscono dai totali
+         */
+        void removeAccounts(Set<UUID> accountIds) {
+            bets.forEach((betId, bet) -> {
+                if (bet.isOpen() && accountIds.contains(bet.accountId())) {
+                    close(betId);
+                }
+            });
+        }
+
+        void pruneClosed(long closedBefore) {
+            bets.values().removeIf(bet -> !bet.isOpen() && bet.closedAt() < closedBefore);
+        }
+
+        private void update(IndexedBet bet, int sign) {
+            update(byAccount, bet.accountId(), bet, sign);
+            update(byIdentity, bet.identityId(), bet, sign);
+            if (bet.eventName() != null) {
+                update(byEvent, bet.eventName(), bet, sign);
+            }
+            total.updateAndGet(totals -> totals.add(bet, sign));
+        }
+
+        private static <K> void update(Map<K, ExposureTotals> totals, K key, IndexedBet bet, int sign) {
+            // Keys without open bets are dropped so the maps only hold current exposure
+            totals.compute(key, (k, current) -> {
+                ExposureTotals updated = (current != null ? current : ExposureTotals.EMPTY).add(bet, sign);
+                return updated.openBets() > 0 ? updated : null;
+            });
+        }
+    }
+}
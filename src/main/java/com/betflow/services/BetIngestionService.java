@@ -0,0 +1,228 @@
+package com.betflow.services;
+
+import com.betflow.dto.operation.BetOperationDTO;
+import com.betflow.dto.operation.OperationImportRowDTO;
+import com.betflow.entities.BetOperation;
+import com.betflow.entities.FinancialOperation;
+import com.betflow.events.DomainDataChangedEvent;
+import com.betflow.exceptions.ResourceNotFoundException;
+import com.betflow.exceptions.ServiceOverloadedException;
+import com.betflow.repositories.AccountRepository;
+import com.betflow.repositories.AccountRepository.AccountKeysRow;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Registrazione asincrona delle scommesse con commit di gruppo.
+ * Le scommesse entrano in una coda limitata; un unico writer la svuota a blocchi e scrive ogni blocco
+ * in una transazione, con le variazioni di saldo unite per conto come nell'import.
+ * Il future di ogni scommessa si completa dopo il commit del suo blocco; a coda piena la richiesta è respinta.
+ */
+@Service
+@Slf4j
+public class BetIngestionService {
+
+    private final OperationImportService operationImportService;
+    private final AccountRepository accountRepository;
+    private final ConcurrencyRetryService concurrencyRetryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BlockingQueue<PendingBet> queue;
+    private final int batchSize;
+    private final long lingerMs;
+    private final long offerTimeoutMs;
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    public BetIngestionService(OperationImportService operationImportService,
+                               AccountRepository accountRepository,
+                               ConcurrencyRetryService concurrencyRetryService,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${betflow.ingestion.queue-capacity:10000}") int queueCapacity,
+                               @Value("${betflow.ingestion.batch-size:500}") int batchSize,
+                               @Value("${betflow.ingestion.linger-ms:5}") long lingerMs,
+                               @Value("${betflow.ingestion.offer-timeout-ms:100}") long offerTimeoutMs) {
+        this.operationImportService = operationImportService;
+        this.accountRepository = accountRepository;
+        this.concurrencyRetryService = concurrencyRetryService;
+        this.eventPublisher = eventPublisher;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.writer = new Thread(this::drain, "bet-ingestion-writer");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Accoda una scommessa già validata; il future restituisce la scommessa salvata dopo il commit
+     */
+    public CompletableFuture<BetOperationDTO> submit(BetOperationDTO dto) {
+        OperationImportRowDTO row = OperationImportRowDTO.builder()
+                .type("BET")
+                .accountId(dto.getAccountId())
+                .amount(dto.getAmount())
+                .operationDate(LocalDateTime.now())
+                .notes(dto.getNotes())
+                .eventName(dto.getEventName())
+                .odds(dto.getOdds())
+                .outcome(dto.getOutcome())
+                .build();
+        PendingBet pending = new PendingBet(row, new CompletableFuture<>());
+
+        boolean accepted;
+        try {
+            accepted = running && queue.offer(pending, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            throw new ServiceOverloadedException("Bet ingestion queue is full, retry later");
+        }
+        return pending.result();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+
+        List<PendingBet> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(pending -> pending.result().completeExceptionally(
+                new ServiceOverloadedException("Bet ingestion stopped before the bet was written")));
+    }
+
+    private void drain() {
+        List<PendingBet> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                // Waits briefly for more bets, so that one commit covers as many of them as possible
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingBet next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                // Shutting down: the bets taken but not written are failed, the queued ones by shutdown()
+                batch.forEach(pending -> pending.result().completeExceptionally(
+                        new ServiceOverloadedException("Bet ingestion stopped before the bet was written")));
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Bet ingestion batch failed", e);
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingBet> batch) {
+        Map<UUID, AccountKeysRow> accounts = accountRepository.findAccountKeysByIds(batch.stream()
+                        .map(pending -> pending.row().getAccountId())
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(AccountKeysRow::getAccountId, Function.identity()));
+
+        List<PendingBet> valid = new ArrayList<>(batch.size());
+        for (PendingBet pending : batch) {
+            UUID accountId = pending.row().getAccountId();
+            if (accounts.containsKey(accountId)) {
+                valid.add(pending);
+            } else {
+                pending.result().completeExceptionally(new ResourceNotFoundException("Account", "id", accountId));
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        try {
+            persist(valid, accounts);
+        } catch (DataAccessException | TransactionException e) {
+            if (valid.size() == 1) {
+                valid.get(0).result().completeExceptionally(e);
+                return;
+            }
+            // One failing bet rolls back the whole batch: the others are written again one by one
+            log.warn("Bet ingestion batch of {} rolled back, writing the bets one by one: {}",
+                    valid.size(), e.getMessage());
+            for (PendingBet pending : valid) {
+                try {
+                    persist(List.of(pending), accounts);
+                } catch (DataAccessException | TransactionException single) {
+                    pending.result().completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private void persist(List<PendingBet> bets, Map<UUID, AccountKeysRow> accounts) {
+        List<OperationImportRowDTO> rows = bets.stream().map(PendingBet::row).toList();
+        List<AccountKeysRow> keys = rows.stream().map(row -> accounts.get(row.getAccountId())).toList();
+
+        List<FinancialOperation> operations = concurrencyRetryService.execute("ingestBets",
+                () -> operationImportService.persistOperations(rows, keys));
+
+        // Committed: every bet of the batch is durable from here on
+        eventPublisher.publishEvent(new DomainDataChangedEvent("FinancialOperation"));
+        for (int i = 0; i < bets.size(); i++) {
+            bets.get(i).result().complete(mapToDTO((BetOperation) operations.get(i), keys.get(i)));
+        }
+        log.debug("Bet ingestion batch of {} committed", bets.size());
+    }
+
+    private BetOperationDTO mapToDTO(BetOperation bet, AccountKeysRow account) {
+        return BetOperationDTO.builder()
+                .id(bet.getId())
+                .operationDate(bet.getOperationDate())
+                .amount(bet.getAmount())
+                .notes(bet.getNotes())
+                .operationType("BET")
+                .accountId(account.getAccountId())
+                .accountUsername(account.getUsername())
+                .platformName(account.getPlatformName())
+                .eventName(bet.getEventName())
+                .odds(bet.getOdds())
+                .outcome(bet.getOutcome())
+                .build();
+    }
+
+    private record PendingBet(OperationImportRowDTO row, CompletableFuture<BetOperationDTO> result) {
+    }
+}
@@ -0,0 +1,213 @@
+package com.betflow.services;
+
+import com.betflow.dto.operation.BetSettlementDTO;
+import com.betflow.dto.operation.BulkSettlementRequestDTO;
+import com.betflow.dto.operation.BulkSettlementResultDTO;
+import com.betflow.enums.BetOutcome;
+import com.betflow.events.DomainDataChangedEvent;
+import com.betflow.events.OpenBetsChangedEvent;
+import com.betflow.exceptions.BadRequestException;
+import com.betflow.money.Money;
+import com.betflow.repositories.AccountRepository;
+import com.betflow.repositories.FinancialOperationRepository;
+import com.betflow.repositories.FinancialOperationRepository.PendingBetRow;
+import com.betflow.services.PromotionService.QualifyingStake;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Chiusura delle scommesse, singola o in blocco.
+ * Gli esiti sono scritti con UPDATE condizionali in batch (solo se la scommessa è ancora aperta),
+ * poi le variazioni di saldo vengono sommate per conto e applicate con un solo UPDATE per conto.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BetSettlementService {
+
+    private static final int BATCH_SIZE = 500;
+    private static final String SETTLE_SQL =
+            "UPDATE bet_operation SET outcome = ? WHERE id = ? AND outcome IS NULL";
+
+    private final FinancialOperationRepository financialOperationRepository;
+    private final AccountRepository accountRepository;
+    private final LedgerRollupService ledgerRollupService;
+    private final ProfitTimeSeriesService profitTimeSeriesService;
+    private final OperationHistoryService operationHistoryService;
+    private final PromotionService promotionService;
+    private final ConcurrencyRetryService concurrencyRetryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Importo restituito al conto da una scommessa chiusa con l'esito indicato,
+     * arrotondato ai centesimi come il saldo che lo riceve
+     */
+    public static BigDecimal payout(BigDecimal stake, BigDecimal odds, BetOutcome outcome) {
+        return payout(Money.of(stake), odds, outcome).toBigDecimal();
+    }
+
+    /**
+     * Come payout su BigDecimal, per i calcoli in memoria
+     */
+    public static Money payout(Money stake, BigDecimal odds, BetOutcome outcome) {
+        if (outcome == BetOutcome.WIN) {
+            return stake.times(odds, RoundingMode.HALF_UP);
+        }
+        if (outcome == BetOutcome.VOID) {
+            return stake;
+        }
+        return Money.ZERO;
+    }
+
+    public BulkSettlementResultDTO settle(BulkSettlementRequestDTO request) {
+        boolean byEvent = request.getEventName() != null && !request.getEventName().isBlank();
+        boolean byIds = request.getBets() != null && !request.getBets().isEmpty();
+
+        if (byEvent == byIds) {
+            throw new BadRequestException("Provide either an event name with an outcome or a list of bets");
+        }
+        if (byEvent && request.getOutcome() == null) {
+            throw new BadRequestException("Outcome is required when settling by event name");
+        }
+
+        if (byEvent) {
+            return concurrencyRetryService.execute("settleEvent", () -> settleEvent(request.getEventName(), request.getOutcome()));
+        }
+        return concurrencyRetryService.execute("settleBets", () -> settleBets(request.getBets()));
+    }
+
+    /**
+     * Chiude le scommesse indicate nella transazione del chiamante
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public BulkSettlementResultDTO settleBets(List<BetSettlementDTO> bets) {
+        Map<UUID, BetOutcome> outcomes = new LinkedHashMap<>();
+        bets.forEach(bet -> outcomes.put(bet.getBetId(), bet.getOutcome()));
+
+        List<UUID> ids = new ArrayList<>(outcomes.keySet());
+        List<PendingBetRow> pending = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            pending.addAll(financialOperationRepository.findPendingBetsByIds(
+                    ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()))));
+        }
+
+        BulkSettlementResultDTO result = apply(pending, outcomes);
+        result.setRequested(outcomes.size());
+        // Ids that were not pending (unknown or already settled) never reached the update
+        Set<UUID> pendingIds = pending.stream().map(PendingBetRow::getBetId).collect(Collectors.toSet());
+        outcomes.keySet().stream()
+                .filter(id -> !pendingIds.contains(id))
+                .forEach(result.getSkippedBetIds()::add);
+        return result;
+    }
+
+    private BulkSettlementResultDTO settleEvent(String eventName, BetOutcome outcome) {
+        List<PendingBetRow> pending = financialOperationRepository.findPendingBetsByEventName(eventName);
+        Map<UUID, BetOutcome> outcomes = new LinkedHashMap<>();
+        pending.forEach(row -> outcomes.put(row.getBetId(), outcome));
+
+        BulkSettlementResultDTO result = apply(pending, outcomes);
+        result.setEventName(eventName);
+        result.setRequested(pending.size());
+        return result;
+    }
+
+    private BulkSettlementResultDTO apply(List<PendingBetRow> pending, Map<UUID, BetOutcome> outcomes) {
+        BulkSettlementResultDTO result = BulkSettlementResultDTO.builder()
+                .totalStakes(BigDecimal.ZERO)
+                .totalPayout(BigDecimal.ZERO)
+                .skippedBetIds(new ArrayList<>())
+                .build();
+
+        // Conditional updates: a bet settled concurrently reports 0 rows and is skipped
+        int[][] counts = jdbcTemplate.batchUpdate(SETTLE_SQL, pending, BATCH_SIZE, (ps, row) -> {
+            ps.setString(1, outcomes.get(row.getBetId()).name());
+            ps.setObject(2, row.getBetId());
+        });
+
+        // Sorted maps so that rows are always locked in the same order
+        Map<UUID, BigDecimal> accountDeltas = new TreeMap<>();
+        Map<UUID, BigDecimal> identityDeltas = new TreeMap<>();
+        Map<BucketKey, BigDecimal> bucketDeltas = new LinkedHashMap<>();
+        Map<UUID, BetOutcome> settled = new LinkedHashMap<>();
+        List<QualifyingStake> rolloverStakes = new ArrayList<>();
+
+        for (int i = 0; i < pending.size(); i++) {
+            PendingBetRow row = pending.get(i);
+            int count = counts[i / BATCH_SIZE][i % BATCH_SIZE];
+            if (count == 0) {
+                result.getSkippedBetIds().add(row.getBetId());
+                continue;
+            }
+            if (count != 1 && count != Statement.SUCCESS_NO_INFO) {
+                throw new IllegalStateException("Unexpected update count " + count + " for bet " + row.getBetId());
+            }
+
+            BetOutcome outcome = outcomes.get(row.getBetId());
+            settled.put(row.getBetId(), outcome);
+            // Rounded to cents before merging, so account, ledger and buckets get the same amounts
+            BigDecimal payout = payout(Money.of(row.getAmount()), row.getOdds(), outcome).toBigDecimal();
+            if (PromotionService.countsTowardsRollover(outcome)) {
+                rolloverStakes.add(new QualifyingStake(row.getAccountId(), row.getOdds(), row.getAmount()));
+            }
+            countOutcome(result, outcome);
+            result.setSettled(result.getSettled() + 1);
+            result.setTotalStakes(result.getTotalStakes().add(row.getAmount()));
+            result.setTotalPayout(result.getTotalPayout().add(payout));
+
+            if (payout.signum() != 0) {
+                accountDeltas.merge(row.getAccountId(), payout, BigDecimal::add);
+                identityDeltas.merge(row.getIdentityId(), payout, BigDecimal::add);
+                bucketDeltas.merge(new BucketKey(row.getAccountId(), row.getIdentityId(), row.getPlatformId(),
+                        row.getOperationDate().toLocalDate()), payout, BigDecimal::add);
+            }
+        }
+
+        accountDeltas.forEach(accountRepository::addToBalance);
+        identityDeltas.forEach(ledgerRollupService::recordBalanceChange);
+        bucketDeltas.forEach((key, amount) -> profitTimeSeriesService.recordBetReturn(
+                key.accountId(), key.identityId(), key.platformId(), key.betDate(), amount));
+        operationHistoryService.recordBetsSettled(settled);
+        promotionService.accrueRollover(rolloverStakes);
+        result.setAccountsUpdated(accountDeltas.size());
+
+        if (result.getSettled() > 0) {
+            eventPublisher.publishEvent(OpenBetsChangedEvent.closed(new ArrayList<>(settled.keySet())));
+            eventPublisher.publishEvent(new DomainDataChangedEvent("FinancialOperation"));
+        }
+        log.info("Settled {} bets ({} skipped), {} accounts credited with {}",
+                result.getSettled(), result.getSkippedBetIds().size(), result.getAccountsUpdated(),
+                result.getTotalPayout());
+        return result;
+    }
+
+    private void countOutcome(BulkSettlementResultDTO result, BetOutcome outcome) {
+        switch (outcome) {
+            case WIN -> result.setWins(result.getWins() + 1);
+            case LOSS -> result.setLosses(result.getLosses() + 1);
+            case VOID -> result.setVoids(result.getVoids() + 1);
+        }
+    }
+
+    private record BucketKey(UUID accountId, UUID identityId, UUID platformId, LocalDate betDate) {
+    }
+}
@@ -0,0 +1,105 @@
+package com.betflow.services;
+
+import com.betflow.dto.admin.RetryMetricsDTO;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Esegue un'operazione in una nuova transazione e la ripete, con attesa crescente e casuale,
+ * quando fallisce per un conflitto di concorrenza (versione obsoleta, deadlock, timeout di lock).
+ */
+@Service
+@Slf4j
+public class ConcurrencyRetryService {
+
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    private final Map<String, RetryCounters> counters = new ConcurrentHashMap<>();
+
+    public ConcurrencyRetryService(PlatformTransactionManager transactionManager,
+                                   EntityManager entityManager,
+                                   @Value("${betflow.retry.max-attempts:5}") int maxAttempts,
+                                   @Value("${betflow.retry.initial-backoff-ms:20}") long initialBackoffMs,
+                                   @Value("${betflow.retry.max-backoff-ms:500}") long maxBackoffMs) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManager = entityManager;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    public <T> T execute(String operation, Supplier<T> work) {
+        RetryCounters operationCounters = counters.computeIfAbsent(operation, key -> new RetryCounters());
+        operationCounters.executions.increment();
+
+        // Inside a caller's transaction a conflict must roll back the whole unit, so no retry here
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    operationCounters.exhausted.increment();
+                    log.warn("{} failed after {} attempts: {}", operation, attempt, e.getMessage());
+                    throw e;
+                }
+                operationCounters.retries.increment();
+                log.debug("{} hit a concurrent update (attempt {}), retrying", operation, attempt);
+                // With open-in-view the persistence context outlives the transaction and still holds stale entities
+                entityManager.clear();
+                backoff(attempt);
+            }
+        }
+    }
+
+    public List<RetryMetricsDTO> getMetrics() {
+        return counters.entrySet().stream()
+                .map(entry -> RetryMetricsDTO.builder()
+                        .operation(entry.getKey())
+                        .executions(entry.getValue().executions.sum())
+                        .retries(entry.getValue().retries.sum())
+                        .exhausted(entry.getValue().exhausted.sum())
+                        .build())
+                .sorted((a, b) -> Long.compare(b.getRetries(), a.getRetries()))
+                .collect(Collectors.toList());
+    }
+
+    private void backoff(int attempt) {
+        // Exponential backoff with "equal jitter": half fixed, half random
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    private static final class RetryCounters {
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+    }
+}
@@ -0,0 +1,81 @@
+package com.betflow.services;
+
+import com.betflow.dto.statistics.DashboardDTO;
+import com.betflow.events.DomainDataChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mantiene in memoria l'ultima dashboard calcolata.
+ * Le scritture la marcano come sporca e il ricalcolo avviene in background al massimo una volta
+ * per intervallo: nel frattempo i lettori ricevono la versione precedente senza attendere.
+ * Anche il cambio di data rende la dashboard sporca, perché contiene conteggi relativi a oggi.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardSnapshotService {
+
+    private final StatisticsService statisticsService;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private final Object firstLoadLock = new Object();
+
+    /**
+     * Restituisce l'ultima dashboard calcolata; solo la prima richiesta attende il calcolo
+     */
+    public DashboardDTO getSnapshot() {
+        Snapshot current = snapshot.get();
+        if (current != null) {
+            return current.dashboard();
+        }
+        synchronized (firstLoadLock) {
+            if (snapshot.get() == null) {
+                refresh();
+            }
+            return snapshot.get().dashboard();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDomainDataChanged(DomainDataChangedEvent event) {
+        log.trace("Dashboard snapshot marked dirty by {} change", event.getEntityName());
+        dirty.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${betflow.dashboard.refresh-interval-ms:5000}")
+    public void refreshIfDirty() {
+        Snapshot current = snapshot.get();
+        // Nothing to refresh until someone has asked for the dashboard
+        if (current != null && (dirty.get() || !current.computedOn().equals(LocalDate.now()))) {
+            refresh();
+        }
+    }
+
+    private void refresh() {
+        // Cleared before computing so that writes committed meanwhile trigger another refresh
+        dirty.set(false);
+        // Taken before computing: a refresh running across midnight is redone for the new day
+        LocalDate today = LocalDate.now();
+        try {
+            snapshot.set(new Snapshot(statisticsService.getDashboardStatistics(), today));
+        } catch (RuntimeException e) {
+            dirty.set(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Dashboard calcolata e data a cui si riferiscono i conteggi (scadenze, promozioni in scadenza)
+     */
+    private record Snapshot(DashboardDTO dashboard, LocalDate computedOn) {
+    }
+}
@@ -1,18 +1,33 @@
 package com.betflow.services;
 
 import com.betflow.dto.operation.*;
+import com.betflow.dto.pagination.CursorPageDTO;
+import com.betflow.dto.pagination.PageCursor;
 import com.betflow.dto.statistics.IdentityProfitDTO;
 import com.betflow.entities.*;
-import com.betflow.enums.BetOutcome;
+import com.betflow.enums.OperationFileFormat;
 import com.betflow.enums.WithdrawalStatus;
+import com.betflow.events.DomainDataChangedEvent;
+import com.betflow.events.OpenBetsChangedEvent;
+import com.betflow.events.OpenBetsChangedEvent.OpenBet;
 import com.betflow.exceptions.ResourceNotFoundException;
+import com.betflow.money.Money;
 import com.betflow.repositories.*;
+import com.betflow.repositories.FinancialOperationRepository.BetRow;
+import com.betflow.repositories.FinancialOperationRepository.DepositRow;
+import com.betflow.repositories.FinancialOperationRepository.OperationRow;
+import com.betflow.repositories.FinancialOperationRepository.WithdrawalRow;
+import com.betflow.services.PromotionService.QualifyingStake;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -24,20 +39,31 @@ import java.util.stream.Collectors;
 public class FinancialOperationService {
 
     private final FinancialOperationRepository financialOperationRepository;
+    private final OperationHistoryRepository operationHistoryRepository;
+    private final OperationHistoryService operationHistoryService;
     private final AccountRepository accountRepository;
-    private final IdentityRepository identityRepository;
+    private final LedgerRollupService ledgerRollupService;
+    private final ProfitTimeSeriesService profitTimeSeriesService;
+    private final BetSettlementService betSettlementService;
+    private final OperationImportService operationImportService;
+    private final OperationExportService operationExportService;
+    private final StatisticsService statisticsService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ConcurrencyRetryService concurrencyRetryService;
+    private final IdempotencyService idempotencyService;
+    private final PromotionService promotionService;
 
     // ==================== DEPOSIT OPERATIONS ====================
 
     public List<DepositDTO> getAllDeposits() {
-        return financialOperationRepository.findAllDeposits().stream()
-                .map(this::mapDepositToDTO)
+        return financialOperationRepository.findAllDepositRows().stream()
+                .map(this::mapDepositRowToDTO)
                 .collect(Collectors.toList());
     }
 
     public List<DepositDTO> getDepositsByAccount(UUID accountId) {
-        return financialOperationRepository.findDepositsByAccountId(accountId).stream()
-                .map(this::mapDepositToDTO)
+        return financialOperationRepository.findDepositRowsByAccountId(accountId).stream()
+                .map(this::mapDepositRowToDTO)
                 .collect(Collectors.toList());
     }
 
@@ -50,8 +76,18 @@ public class FinancialOperationService {
         return mapDepositToDTO((Deposit) operation);
     }
 
-    @Transactional
     public DepositDTO createDeposit(DepositDTO dto) {
+        return createDeposit(dto, null);
+    }
+
+    /**
+     * Con una chiave di idempotenza già usata restituisce la risposta originale senza scrivere
+     */
+    public DepositDTO createDeposit(DepositDTO dto, String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "createDeposit", dto, DepositDTO.class, () -> doCreateDeposit(dto));
+    }
+
+    private DepositDTO doCreateDeposit(DepositDTO dto) {
         Account account = accountRepository.findById(dto.getAccountId())
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "id", dto.getAccountId()));
 
@@ -64,43 +100,56 @@ public class FinancialOperationService {
                 .build();
 
         // Update account balance
-        account.setCurrentBalance(account.getCurrentBalance().add(dto.getAmount()));
-        accountRepository.save(account);
+        BigDecimal newBalance = applyBalanceDelta(account, dto.getAmount());
+        ledgerRollupService.recordDeposit(account.getIdentity().getId(), dto.getAmount());
 
         Deposit savedDeposit = financialOperationRepository.save(deposit);
-        log.info("Deposit created: {} on account {}", dto.getAmount(), account.getUsername());
+        profitTimeSeriesService.recordDeposit(savedDeposit);
+        operationHistoryService.recordCreated(savedDeposit);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("FinancialOperation"));
+        log.info("Deposit created: {} on account {} (balance {})", dto.getAmount(), account.getUsername(), newBalance);
         return mapDepositToDTO(savedDeposit);
     }
 
     // ==================== WITHDRAWAL OPERATIONS ====================
 
     public List<WithdrawalDTO> getAllWithdrawals() {
-        return financialOperationRepository.findAllWithdrawals().stream()
-                .map(this::mapWithdrawalToDTO)
+        return financialOperationRepository.findAllWithdrawalRows().stream()
+                .map(this::mapWithdrawalRowToDTO)
                 .collect(Collectors.toList());
     }
 
     public List<WithdrawalDTO> getWithdrawalsByAccount(UUID accountId) {
-        return financialOperationRepository.findWithdrawalsByAccountId(accountId).stream()
-                .map(this::mapWithdrawalToDTO)
+        return financialOperationRepository.findWithdrawalRowsByAccountId(accountId).stream()
+                .map(this::mapWithdrawalRowToDTO)
                 .collect(Collectors.toList());
     }
 
     public List<WithdrawalDTO> getPendingWithdrawals() {
-        return financialOperationRepository.findWithdrawalsByStatus(WithdrawalStatus.REQUESTED).stream()
-                .map(this::mapWithdrawalToDTO)
+        return financialOperationRepository.findWithdrawalRowsByStatus(WithdrawalStatus.REQUESTED).stream()
+                .map(this::mapWithdrawalRowToDTO)
                 .collect(Collectors.toList());
     }
 
     public List<WithdrawalDTO> getWithdrawalsByStatus(String status) {
         WithdrawalStatus withdrawalStatus = WithdrawalStatus.valueOf(status.toUpperCase());
-        return financialOperationRepository.findWithdrawalsByStatus(withdrawalStatus).stream()
-                .map(this::mapWithdrawalToDTO)
+        return financialOperationRepository.findWithdrawalRowsByStatus(withdrawalStatus).stream()
+                .map(this::mapWithdrawalRowToDTO)
                 .collect(Collectors.toList());
     }
 
-    @Transactional
     public WithdrawalDTO createWithdrawal(WithdrawalDTO dto) {
+        return createWithdrawal(dto, null);
+    }
+
+    /**
+     * Con una chiave di idempotenza già usata restituisce la risposta originale senza scrivere
+     */
+    public WithdrawalDTO createWithdrawal(WithdrawalDTO dto, String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "createWithdrawal", dto, WithdrawalDTO.class, () -> doCreateWithdrawal(dto));
+    }
+
+    private WithdrawalDTO doCreateWithdrawal(WithdrawalDTO dto) {
         Account account = accountRepository.findById(dto.getAccountId())
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "id", dto.getAccountId()));
 
@@ -113,11 +162,14 @@ public class FinancialOperationService {
                 .build();
 
         // Deduct from account balance
-        account.setCurrentBalance(account.getCurrentBalance().subtract(dto.getAmount()));
-        accountRepository.save(account);
+        BigDecimal newBalance = applyBalanceDelta(account, dto.getAmount().negate());
+        ledgerRollupService.recordWithdrawal(account.getIdentity().getId(), dto.getAmount());
 
         Withdrawal savedWithdrawal = financialOperationRepository.save(withdrawal);
-        log.info("Withdrawal created: {} from account {}", dto.getAmount(), account.getUsername());
+        profitTimeSeriesService.recordWithdrawal(savedWithdrawal);
+        operationHistoryService.recordCreated(savedWithdrawal);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("FinancialOperation"));
+        log.info("Withdrawal created: {} from account {} (balance {})", dto.getAmount(), account.getUsername(), newBalance);
         return mapWithdrawalToDTO(savedWithdrawal);
     }
 
@@ -144,6 +196,8 @@ public class FinancialOperationService {
         }
 
         Withdrawal savedWithdrawal = financialOperationRepository.save(withdrawal);
+        operationHistoryService.recordWithdrawalUpdated(savedWithdrawal);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("FinancialOperation"));
         log.info("Withdrawal status updated: {} -> {}", id, dto.getStatus());
         return mapWithdrawalToDTO(savedWithdrawal);
     }
@@ -151,25 +205,52 @@ public class FinancialOperationService {
     // ==================== BET OPERATIONS ====================
 
     public List<BetOperationDTO> getAllBetOperations() {
-        return financialOperationRepository.findAllBetOperations().stream()
-                .map(this::mapBetToDTO)
+        return financialOperationRepository.findAllBetRows().stream()
+                .map(this::mapBetRowToDTO)
                 .collect(Collectors.toList());
     }
 
     public List<BetOperationDTO> getBetsByAccount(UUID accountId) {
-        return financialOperationRepository.findBetOperationsByAccountId(accountId).stream()
-                .map(this::mapBetToDTO)
+        return financialOperationRepository.findBetRowsByAccountId(accountId).stream()
+                .map(this::mapBetRowToDTO)
                 .collect(Collectors.toList());
     }
 
+    public BulkSettlementResultDTO settleBets(BulkSettlementRequestDTO request) {
+        return betSettlementService.settle(request);
+    }
+
+    public OperationImportResultDTO importOperations(InputStream input, OperationFileFormat format) {
+        return operationImportService.importOperations(input, format);
+    }
+
+    public void validateExportRange(LocalDateTime startDate, LocalDateTime endDate) {
+        operationExportService.validateRange(startDate, endDate);
+    }
+
+    public long exportOperations(LocalDateTime startDate, LocalDateTime endDate,
+                                 OperationFileFormat format, OutputStream output) {
+        return operationExportService.exportOperations(startDate, endDate, format, output);
+    }
+
     public List<BetOperationDTO> getPendingBets() {
-        return financialOperationRepository.findPendingBets().stream()
-                .map(this::mapBetToDTO)
+        return financialOperationRepository.findPendingBetRows().stream()
+                .map(this::mapBetRowToDTO)
                 .collect(Collectors.toList());
     }
 
-    @Transactional
     public BetOperationDTO createBetOperation(BetOperationDTO dto) {
+        return createBetOperation(dto, null);
+    }
+
+    /**
+     * Con una chiave di idempotenza già usata restituisce la risposta originale senza scrivere
+     */
+    public BetOperationDTO createBetOperation(BetOperationDTO dto, String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "createBetOperation", dto, BetOperationDTO.class, () -> doCreateBetOperation(dto));
+    }
+
+    private BetOperationDTO doCreateBetOperation(BetOperationDTO dto) {
         Account account = accountRepository.findById(dto.getAccountId())
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "id", dto.getAccountId()));
 
@@ -183,17 +264,39 @@ public class FinancialOperationService {
                 .operationDate(LocalDateTime.now())
                 .build();
 
-        // Deduct stake from balance
-        account.setCurrentBalance(account.getCurrentBalance().subtract(dto.getAmount()));
-        accountRepository.save(account);
+        // Deduct stake from balance. A bet recorded already settled is also credited its payout,
+        // as imports and async ingestion do, so replays and bucket rebuilds see the same amounts
+        BigDecimal payout = BetSettlementService.payout(Money.of(dto.getAmount(), RoundingMode.HALF_UP),
+                dto.getOdds(), dto.getOutcome()).toBigDecimal();
+        BigDecimal delta = payout.subtract(dto.getAmount());
+        applyBalanceDelta(account, delta);
+        ledgerRollupService.recordBalanceChange(account.getIdentity().getId(), delta);
 
         BetOperation savedBet = financialOperationRepository.save(bet);
+        profitTimeSeriesService.recordBetPlaced(savedBet);
+        profitTimeSeriesService.recordBetReturn(account.getId(), account.getIdentity().getId(),
+                account.getPlatform().getId(), savedBet.getOperationDate().toLocalDate(), payout);
+        operationHistoryService.recordCreated(savedBet);
+        if (PromotionService.countsTowardsRollover(savedBet.getOutcome())) {
+            // Recorded already settled: its stake counts towards the rollover right away
+            promotionService.accrueRollover(List.of(new QualifyingStake(
+                    account.getId(), savedBet.getOdds(), savedBet.getAmount())));
+        }
+        if (savedBet.getOutcome() == null) {
+            eventPublisher.publishEvent(OpenBetsChangedEvent.opened(List.of(new OpenBet(savedBet.getId(),
+                    account.getId(), account.getIdentity().getId(), savedBet.getEventName(),
+                    savedBet.getAmount(), savedBet.getOdds()))));
+        }
+        eventPublisher.publishEvent(new DomainDataChangedEvent("FinancialOperation"));
         log.info("Bet created: {} @ {} on account {}", dto.getEventName(), dto.getOdds(), account.getUsername());
         return mapBetToDTO(savedBet);
     }
 
-    @Transactional
     public BetOperationDTO updateBetOutcome(UUID id, BetOperationDTO dto) {
+        return concurrencyRetryService.execute("updateBetOutcome", () -> doUpdateBetOutcome(id, dto));
+    }
+
+    private BetOperationDTO doUpdateBetOutcome(UUID id, BetOperationDTO dto) {
         FinancialOperation operation = financialOperationRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("BetOperation", "id", id));
 
@@ -204,51 +307,51 @@ public class FinancialOperationService {
         BetOperation bet = (BetOperation) operation;
 
         if (dto.getOutcome() != null && bet.getOutcome() == null) {
-            bet.setOutcome(dto.getOutcome());
-
-            Account account = bet.getAccount();
-
-            if (dto.getOutcome() == BetOutcome.WIN) {
-                // Add winnings (stake * odds)
-                BigDecimal winnings = bet.getAmount().multiply(bet.getOdds());
-                account.setCurrentBalance(account.getCurrentBalance().add(winnings));
-                accountRepository.save(account);
-            } else if (dto.getOutcome() == BetOutcome.VOID) {
-                // Return stake
-                account.setCurrentBalance(account.getCurrentBalance().add(bet.getAmount()));
-                accountRepository.save(account);
-            }
-            // LOSS: stake already deducted, no action needed
+            // Same guarded path as bulk settlement: a bet settled concurrently is not paid twice
+            betSettlementService.settleBets(List.of(new BetSettlementDTO(id, dto.getOutcome())));
         }
 
-        BetOperation savedBet = financialOperationRepository.save(bet);
-        log.info("Bet outcome updated: {} -> {}", id, dto.getOutcome());
-        return mapBetToDTO(savedBet);
+        // The outcome is written with a conditional UPDATE, read back what is actually stored
+        BetOperationDTO result = mapBetToDTO(bet);
+        result.setOutcome(financialOperationRepository.findBetOutcomeById(id));
+        log.info("Bet outcome updated: {} -> {}", id, result.getOutcome());
+        return result;
     }
 
     // ==================== GENERAL OPERATIONS ====================
 
     public List<FinancialOperationDTO> getAllOperations() {
-        return financialOperationRepository.findAll().stream()
-                .map(this::mapToDTO)
+        return financialOperationRepository.findAllOperationRows().stream()
+                .map(this::mapRowToDTO)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Pagina di operazioni dalla più recente (tutte o di un conto);
+     * cursor è il token restituito dalla pagina precedente
+     */
+    public CursorPageDTO<FinancialOperationDTO> getOperationsPage(UUID accountId, String cursor, Integer size) {
+        int pageSize = PageCursor.pageSize(size);
+        return PageCursor.toPage(operationHistoryRepository.findPage(accountId, PageCursor.decode(cursor), pageSize),
+                pageSize, entry -> new PageCursor(entry.getOperationDate().toString(), entry.getId()),
+                this::mapEntryToDTO);
+    }
+
     public List<FinancialOperationDTO> getOperationsByAccount(UUID accountId) {
-        return financialOperationRepository.findByAccountIdOrderByDateDesc(accountId).stream()
-                .map(this::mapToDTO)
+        return financialOperationRepository.findOperationRowsByAccountId(accountId).stream()
+                .map(this::mapRowToDTO)
                 .collect(Collectors.toList());
     }
 
     public List<FinancialOperationDTO> getOperationsByIdentity(UUID identityId) {
-        return financialOperationRepository.findByIdentityId(identityId).stream()
-                .map(this::mapToDTO)
+        return financialOperationRepository.findOperationRowsByIdentityId(identityId).stream()
+                .map(this::mapRowToDTO)
                 .collect(Collectors.toList());
     }
 
     public List<FinancialOperationDTO> getOperationsByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
-        return financialOperationRepository.findByDateRange(startDate, endDate).stream()
-                .map(this::mapToDTO)
+        return financialOperationRepository.findOperationRowsByDateRange(startDate, endDate).stream()
+                .map(this::mapRowToDTO)
                 .collect(Collectors.toList());
     }
 
@@ -257,56 +360,45 @@ public class FinancialOperationService {
         FinancialOperation operation = financialOperationRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("FinancialOperation", "id", id));
 
+        // Zero delta, only to take the account row lock that the other bucket writers hold
+        accountRepository.addToBalance(operation.getAccount().getId(), BigDecimal.ZERO);
+        ledgerRollupService.recordOperationDeleted(operation.getAccount().getIdentity().getId(),
+                operation.getOperationType(), operation.getAmount());
+        profitTimeSeriesService.recordOperationDeleted(operation);
+        if (operation instanceof BetOperation bet && PromotionService.countsTowardsRollover(bet.getOutcome())) {
+            promotionService.reverseRollover(new QualifyingStake(
+                    operation.getAccount().getId(), bet.getOdds(), bet.getAmount()));
+        }
+        operationHistoryService.recordDeleted(id);
         financialOperationRepository.delete(operation);
+        if (operation instanceof BetOperation bet && bet.getOutcome() == null) {
+            eventPublisher.publishEvent(OpenBetsChangedEvent.closed(List.of(id)));
+        }
+        eventPublisher.publishEvent(new DomainDataChangedEvent("FinancialOperation"));
         log.info("Financial operation deleted: {}", id);
     }
 
     // ==================== STATISTICS ====================
 
     public IdentityProfitDTO calculateProfitByIdentity(UUID identityId) {
-        Identity identity = identityRepository.findById(identityId)
-                .orElseThrow(() -> new ResourceNotFoundException("Identity", "id", identityId));
-
-        BigDecimal totalDeposits = financialOperationRepository.sumDepositsByIdentityId(identityId);
-        BigDecimal totalWithdrawals = financialOperationRepository.sumWithdrawalsByIdentityId(identityId);
-        BigDecimal totalBalance = accountRepository.sumCurrentBalanceByIdentityId(identityId);
-
-        if (totalDeposits == null) totalDeposits = BigDecimal.ZERO;
-        if (totalWithdrawals == null) totalWithdrawals = BigDecimal.ZERO;
-        if (totalBalance == null) totalBalance = BigDecimal.ZERO;
-
-        // Profit = (Withdrawals + Current Balance) - Deposits
-        BigDecimal netProfit = totalWithdrawals.add(totalBalance).subtract(totalDeposits);
-
-        int accountsCount = accountRepository.findByIdentityId(identityId).size();
-
-        return IdentityProfitDTO.builder()
-                .identityId(identityId)
-                .identityFullName(identity.getFullName())
-                .totalDeposits(totalDeposits)
-                .totalWithdrawals(totalWithdrawals)
-                .totalCurrentBalance(totalBalance)
-                .netProfit(netProfit)
-                .totalAccounts(accountsCount)
-                .build();
+        return statisticsService.calculateProfitByIdentity(identityId);
     }
 
-    // ==================== MAPPERS ====================
-
-    private FinancialOperationDTO mapToDTO(FinancialOperation operation) {
-        FinancialOperationDTO.FinancialOperationDTOBuilder<?, ?> builder = FinancialOperationDTO.builder()
-                .id(operation.getId())
-                .operationDate(operation.getOperationDate())
-                .amount(operation.getAmount())
-                .notes(operation.getNotes())
-                .operationType(operation.getOperationType())
-                .accountId(operation.getAccount().getId())
-                .accountUsername(operation.getAccount().getUsername())
-                .platformName(operation.getAccount().getPlatform().getName());
-
-        return builder.build();
+    // ==================== BALANCE ====================
+
+    /**
+     * Applica la variazione al saldo direttamente sul database e restituisce il nuovo saldo.
+     * L'UPDATE blocca la riga del conto fino al commit, quindi operazioni concorrenti
+     * sullo stesso conto vengono serializzate senza perdere aggiornamenti.
+     */
+    private BigDecimal applyBalanceDelta(Account account, BigDecimal delta) {
+        accountRepository.addToBalance(account.getId(), delta);
+        // The loaded Account keeps its old balance and is never saved back
+        return accountRepository.findCurrentBalanceById(account.getId());
     }
 
+    // ==================== MAPPERS ====================
+
     private DepositDTO mapDepositToDTO(Deposit deposit) {
         return DepositDTO.builder()
                 .id(deposit.getId())
@@ -351,4 +443,75 @@ public class FinancialOperationService {
                 .outcome(bet.getOutcome())
                 .build();
     }
+
+    private FinancialOperationDTO mapEntryToDTO(OperationHistoryEntry entry) {
+        return FinancialOperationDTO.builder()
+                .id(entry.getId())
+                .operationDate(entry.getOperationDate())
+                .amount(entry.getAmount())
+                .notes(entry.getNotes())
+                .operationType(entry.getOperationType())
+                .accountId(entry.getAccountId())
+                .accountUsername(entry.getAccountUsername())
+                .platformName(entry.getPlatformName())
+                .build();
+    }
+
+    private FinancialOperationDTO mapRowToDTO(OperationRow row) {
+        return FinancialOperationDTO.builder()
+                .id(row.getId())
+                .operationDate(row.getOperationDate())
+                .amount(row.getAmount())
+                .notes(row.getNotes())
+                .operationType(row.getOperationType())
+                .accountId(row.getAccountId())
+                .accountUsername(row.getAccountUsername())
+                .platformName(row.getPlatformName())
+                .build();
+    }
+
+    private DepositDTO mapDepositRowToDTO(DepositRow row) {
+        return DepositDTO.builder()
+                .id(row.getId())
+                .operationDate(row.getOperationDate())
+                .amount(row.getAmount())
+                .notes(row.getNotes())
+                .operationType(row.getOperationType())
+                .accountId(row.getAccountId())
+                .accountUsername(row.getAccountUsername())
+                .platformName(row.getPlatformName())
+                .paymentMethod(row.getPaymentMethod())
+                .build();
+    }
+
+    private WithdrawalDTO mapWithdrawalRowToDTO(WithdrawalRow row) {
+        return WithdrawalDTO.builder()
+                .id(row.getId())
+                .operationDate(row.getOperationDate())
+                .amount(row.getAmount())
+                .notes(row.getNotes())
+                .operationType(row.getOperationType())
+                .accountId(row.getAccountId())
+                .accountUsername(row.getAccountUsername())
+                .platformName(row.getPlatformName())
+                .status(row.getStatus())
+                .arrivalDate(row.getArrivalDate())
+                .build();
+    }
+
+    private BetOperationDTO mapBetRowToDTO(BetRow row) {
+        return BetOperationDTO.builder()
+                .id(row.getId())
+                .operationDate(row.getOperationDate())
+                .amount(row.getAmount())
+                .notes(row.getNotes())
+                .operationType(row.getOperationType())
+                .accountId(row.getAccountId())
+                .accountUsername(row.getAccountUsername())
+                .platformName(row.getPlatformName())
+                .eventName(row.getEventName())
+                .odds(row.getOdds())
+                .outcome(row.getOutcome())
+                .build();
+    }
 }
@@ -0,0 +1,177 @@
+package com.betflow.services;
+
+import com.betflow.entities.IdempotencyKey;
+import com.betflow.exceptions.BadRequestException;
+import com.betflow.exceptions.DuplicateResourceException;
+import com.betflow.repositories.IdempotencyKeyRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Gestione dell'header Idempotency-Key sulle richieste che creano operazioni.
+ * La prima richiesta registra la chiave e la risposta nella stessa transazione della scrittura;
+ * le ripetizioni restituiscono la risposta salvata senza passare dal percorso di scrittura.
+ * Le risposte recenti restano in una cache LRU limitata davanti alla tabella.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ConcurrencyRetryService concurrencyRetryService;
+    private final ObjectMapper objectMapper;
+    private final long retentionHours;
+    private final Map<String, StoredResponse> cache;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              ConcurrencyRetryService concurrencyRetryService,
+                              ObjectMapper objectMapper,
+                              @Value("${betflow.idempotency.cache-size:10000}") int cacheSize,
+                              @Value("${betflow.idempotency.retention-hours:24}") long retentionHours) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.concurrencyRetryService = concurrencyRetryService;
+        this.objectMapper = objectMapper;
+        this.retentionHours = retentionHours;
+        // Access-ordered map: the least recently used response is evicted first
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Esegue la scrittura (con i tentativi ripetuti in caso di conflitto) una sola volta per chiave.
+     * Senza chiave la scrittura viene sempre eseguita.
+     */
+    public <T> T execute(String key, String operation, Object request, Class<T> responseType, Supplier<T> write) {
+        if (key == null || key.isBlank()) {
+            return concurrencyRetryService.execute(operation, write);
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String username = currentUsername();
+        String scope = username + '\n' + operation + '\n' + key;
+        String requestHash = hash(request);
+
+        StoredResponse stored = lookup(scope, username, operation, key);
+        if (stored != null) {
+            return replay(stored, requestHash, responseType);
+        }
+
+        try {
+            StoredResponse[] created = new StoredResponse[1];
+            T response = concurrencyRetryService.execute(operation, () -> {
+                UUID id = UUID.randomUUID();
+                // Inserted first: a concurrent duplicate blocks here instead of running the write
+                idempotencyKeyRepository.insert(id, username, operation, key, requestHash, LocalDateTime.now());
+                T result = write.get();
+                created[0] = new StoredResponse(requestHash, toJson(result));
+                idempotencyKeyRepository.saveResponse(id, created[0].body());
+                return result;
+            });
+            cache.put(scope, created[0]);
+            return response;
+        } catch (DataIntegrityViolationException e) {
+            // The same key was committed by a concurrent request, which did the write
+            StoredResponse concurrent = lookup(scope, username, operation, key);
+            if (concurrent == null) {
+                throw e;
+            }
+            log.info("Replaying {} for concurrent request with the same idempotency key", operation);
+            return replay(concurrent, requestHash, responseType);
+        }
+    }
+
+    /**
+     * Elimina le chiavi più vecchie del periodo di conservazione, ogni notte alle 3:30
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    @Transactional
+    public void purgeExpired() {
+        int removed = idempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minusHours(retentionHours));
+        cache.clear();
+        log.info("Removed {} expired idempotency keys", removed);
+    }
+
+    private StoredResponse lookup(String scope, String username, String operation, String key) {
+        StoredResponse cached = cache.get(scope);
+        if (cached != null) {
+            return cached;
+        }
+        return idempotencyKeyRepository.findByUsernameAndOperationAndIdempotencyKey(username, operation, key)
+                .map(this::toStoredResponse)
+                .map(stored -> {
+                    cache.put(scope, stored);
+                    return stored;
+                })
+                .orElse(null);
+    }
+
+    private StoredResponse toStoredResponse(IdempotencyKey entry) {
+        if (entry.getResponseBody() == null) {
+            throw new DuplicateResourceException("A request with this " + HEADER + " is still being processed");
+        }
+        return new StoredResponse(entry.getRequestHash(), entry.getResponseBody());
+    }
+
+    private <T> T replay(StoredResponse stored, String requestHash, Class<T> responseType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new BadRequestException(HEADER + " was already used with a different request");
+        }
+        try {
+            return objectMapper.readValue(stored.body(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response cannot be read", e);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Request cannot be hashed", e);
+        }
+    }
+
+    private String toJson(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response cannot be stored", e);
+        }
+    }
+
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : "anonymous";
+    }
+
+    private record StoredResponse(String requestHash, String body) {
+    }
+}
@@ -1,21 +1,30 @@
 package com.betflow.services;
 
 import com.betflow.dto.identity.IdentityDTO;
+import com.betflow.dto.pagination.CursorPageDTO;
+import com.betflow.dto.pagination.PageCursor;
+import com.betflow.entities.Account;
 import com.betflow.entities.Identity;
 import com.betflow.entities.User;
+import com.betflow.events.DomainDataChangedEvent;
+import com.betflow.events.OpenBetsChangedEvent;
 import com.betflow.exceptions.DuplicateResourceException;
 import com.betflow.exceptions.ResourceNotFoundException;
 import com.betflow.repositories.AccountRepository;
+import com.betflow.repositories.AccountRepository.CountRow;
 import com.betflow.repositories.IdentityRepository;
 import com.betflow.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,9 +35,23 @@ public class IdentityService {
     private final IdentityRepository identityRepository;
     private final UserRepository userRepository;
     private final AccountRepository accountRepository;
+    private final LedgerRollupService ledgerRollupService;
+    private final ProfitTimeSeriesService profitTimeSeriesService;
+    private final OperationHistoryService operationHistoryService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<IdentityDTO> getAllIdentities() {
-        return identityRepository.findAll().stream().map(this::mapToDTO).collect(Collectors.toList());
+        return mapToDTOs(identityRepository.findAllWithManager());
+    }
+
+    /**
+     * Pagina di identità ordinate per cognome; cursor è il token restituito dalla pagina precedente
+     */
+    public CursorPageDTO<IdentityDTO> getIdentitiesPage(String cursor, Integer size) {
+        int pageSize = PageCursor.pageSize(size);
+        List<Identity> identities = identityRepository.findPage(PageCursor.decode(cursor), pageSize);
+        return PageCursor.toPage(identities, pageSize,
+                identity -> new PageCursor(identity.getLastName(), identity.getId()), mapper(identities));
     }
 
     public IdentityDTO getIdentityById(UUID id) {
@@ -37,14 +60,13 @@ public class IdentityService {
     }
 
     public List<IdentityDTO> getIdentitiesByManager(UUID managerId) {
-        return identityRepository.findByManagerId(managerId).stream().map(this::mapToDTO).collect(Collectors.toList());
+        return mapToDTOs(identityRepository.findWithManagerByManagerId(managerId));
     }
 
     public List<IdentityDTO> getIdentitiesWithExpiringDocuments(int daysAhead) {
         LocalDate startDate = LocalDate.now();
         LocalDate endDate = startDate.plusDays(daysAhead);
-        return identityRepository.findByDocumentExpiryDateBetween(startDate, endDate).stream()
-                .map(this::mapToDTO).collect(Collectors.toList());
+        return mapToDTOs(identityRepository.findWithManagerByDocumentExpiryDateBetween(startDate, endDate));
     }
 
     @Transactional
@@ -68,6 +90,8 @@ public class IdentityService {
         }
 
         Identity savedIdentity = identityRepository.save(identity);
+        ledgerRollupService.initialize(savedIdentity);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Identity"));
         log.info("Identity created: {} {}", savedIdentity.getFirstName(), savedIdentity.getLastName());
         return mapToDTO(savedIdentity);
     }
@@ -93,6 +117,7 @@ public class IdentityService {
             identity.setNotes(dto.getNotes());
 
         Identity savedIdentity = identityRepository.save(identity);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Identity"));
         log.info("Identity updated: {}", savedIdentity.getId());
         return mapToDTO(savedIdentity);
     }
@@ -101,7 +126,14 @@ public class IdentityService {
     public void deleteIdentity(UUID id) {
         Identity identity = identityRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Identity", "id", id));
+        ledgerRollupService.remove(id);
+        profitTimeSeriesService.removeIdentity(id);
+        operationHistoryService.removeIdentity(id);
+        List<UUID> accountIds = identity.getAccounts().stream().map(Account::getId).toList();
         identityRepository.delete(identity);
+        // Open bets of the deleted accounts go with them in cascade
+        eventPublisher.publishEvent(OpenBetsChangedEvent.accountsRemoved(accountIds));
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Identity"));
         log.info("Identity deleted: {} {}", identity.getFirstName(), identity.getLastName());
     }
 
@@ -110,6 +142,27 @@ public class IdentityService {
     }
 
     private IdentityDTO mapToDTO(Identity identity) {
+        return mapper(List.of(identity)).apply(identity);
+    }
+
+    private List<IdentityDTO> mapToDTOs(List<Identity> identities) {
+        return identities.stream().map(mapper(identities)).toList();
+    }
+
+    /**
+     * Mapper per una lista di identità: i conti sono contati con una query raggruppata per tutta la lista
+     */
+    private Function<Identity, IdentityDTO> mapper(List<Identity> identities) {
+        if (identities.isEmpty()) {
+            return identity -> mapToDTO(identity, 0);
+        }
+        List<UUID> ids = identities.stream().map(Identity::getId).toList();
+        Map<UUID, Long> accounts = AccountRepository.countByIds(ids, accountRepository::countByIdentityIds).stream()
+                .collect(Collectors.toMap(CountRow::getId, CountRow::getTotal));
+        return identity -> mapToDTO(identity, accounts.getOrDefault(identity.getId(), 0L).intValue());
+    }
+
+    private IdentityDTO mapToDTO(Identity identity, int accountsCount) {
         return IdentityDTO.builder()
                 .id(identity.getId())
                 .firstName(identity.getFirstName())
@@ -120,7 +173,7 @@ public class IdentityService {
                 .notes(identity.getNotes())
                 .managerId(identity.getManager() != null ? identity.getManager().getId() : null)
                 .managerUsername(identity.getManager() != null ? identity.getManager().getUsername() : null)
-                .accountsCount(identity.getAccounts() != null ? identity.getAccounts().size() : 0)
+                .accountsCount(accountsCount)
                 .build();
     }
 }
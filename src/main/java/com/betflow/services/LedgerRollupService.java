@@ -0,0 +1,211 @@
+package com.betflow.services;
+
+import com.betflow.dto.statistics.LedgerDriftDTO;
+import com.betflow.dto.statistics.LedgerRollupRebuildDTO;
+import com.betflow.entities.Identity;
+import com.betflow.entities.IdentityLedgerRollup;
+import com.betflow.repositories.IdentityLedgerRollupRepository;
+import com.betflow.repositories.IdentityRepository;
+import com.betflow.repositories.StatisticsRepository;
+import com.betflow.repositories.StatisticsRepository.IdentityProfitRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Mantiene la tabella di rollup per identita' (depositi, prelievi, saldo, numero conti).
+ * Gli aggiornamenti sono incrementi atomici eseguiti nella transazione dell'operazione che li genera.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerRollupService {
+
+    private final IdentityLedgerRollupRepository rollupRepository;
+    private final IdentityRepository identityRepository;
+    private final StatisticsRepository statisticsRepository;
+
+    @Value("${betflow.ledger-rollup.rebuild-on-startup:false}")
+    private boolean rebuildOnStartup;
+
+    /**
+     * Crea la riga di rollup (a zero) per una nuova identità
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void initialize(Identity identity) {
+        rollupRepository.save(IdentityLedgerRollup.builder()
+                .identity(identity)
+                .build());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void remove(UUID identityId) {
+        rollupRepository.deleteByIdentityId(identityId);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDeposit(UUID identityId, BigDecimal amount) {
+        apply(identityId, amount, BigDecimal.ZERO, amount, 0);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordWithdrawal(UUID identityId, BigDecimal amount) {
+        apply(identityId, BigDecimal.ZERO, amount, amount.negate(), 0);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBalanceChange(UUID identityId, BigDecimal delta) {
+        if (delta.signum() != 0) {
+            apply(identityId, BigDecimal.ZERO, BigDecimal.ZERO, delta, 0);
+        }
+    }
+
+    /**
+     * Applica in un solo aggiornamento i totali di piu' operazioni (import in blocco)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTotals(UUID identityId, BigDecimal deposits, BigDecimal withdrawals, BigDecimal balanceDelta) {
+        apply(identityId, deposits, withdrawals, balanceDelta, 0);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAccountCreated(UUID identityId, BigDecimal initialBalance) {
+        apply(identityId, BigDecimal.ZERO, BigDecimal.ZERO, initialBalance, 1);
+    }
+
+    /**
+     * Rimuove dal rollup un conto eliminato insieme ai suoi depositi e prelievi (cancellati in cascata)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAccountDeleted(UUID identityId, BigDecimal balance,
+                                     BigDecimal deposits, BigDecimal withdrawals) {
+        apply(identityId, deposits.negate(), withdrawals.negate(), balance.negate(), -1);
+    }
+
+    /**
+     * L'eliminazione di un'operazione non modifica il saldo del conto, solo i totali storici
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordOperationDeleted(UUID identityId, String operationType, BigDecimal amount) {
+        if ("DEPOSIT".equals(operationType)) {
+            apply(identityId, amount.negate(), BigDecimal.ZERO, BigDecimal.ZERO, 0);
+        } else if ("WITHDRAWAL".equals(operationType)) {
+            apply(identityId, BigDecimal.ZERO, amount.negate(), BigDecimal.ZERO, 0);
+        }
+    }
+
+    /**
+     * Ricalcola da zero il rollup dalle tabelle sorgente e riporta le righe che non coincidevano
+     */
+    @Transactional
+    public LedgerRollupRebuildDTO rebuild() {
+        long start = System.currentTimeMillis();
+
+        // Lock the rows before reading the source totals: a concurrent applyDelta either committed
+        // already (and is in the totals) or waits and is applied on top of the rebuilt values
+        Map<UUID, IdentityLedgerRollup> stored = rollupRepository.findAllForUpdate().stream()
+                .collect(Collectors.toMap(IdentityLedgerRollup::getIdentityId, Function.identity()));
+        List<IdentityProfitRow> expectedRows = statisticsRepository.findAllIdentityProfits();
+
+        List<LedgerDriftDTO> drifts = new ArrayList<>();
+        List<IdentityLedgerRollup> toSave = new ArrayList<>();
+        int created = 0;
+
+        for (IdentityProfitRow expected : expectedRows) {
+            IdentityLedgerRollup rollup = stored.remove(expected.getIdentityId());
+
+            if (rollup == null) {
+                drifts.add(mapToDrift(null, expected));
+                toSave.add(IdentityLedgerRollup.builder()
+                        .identity(identityRepository.getReferenceById(expected.getIdentityId()))
+                        .totalDeposits(expected.getTotalDeposits())
+                        .totalWithdrawals(expected.getTotalWithdrawals())
+                        .totalBalance(expected.getTotalCurrentBalance())
+                        .accountsCount(expected.getTotalAccounts().intValue())
+                        .build());
+                created++;
+            } else if (hasDrift(rollup, expected)) {
+                drifts.add(mapToDrift(rollup, expected));
+                rollup.setTotalDeposits(expected.getTotalDeposits());
+                rollup.setTotalWithdrawals(expected.getTotalWithdrawals());
+                rollup.setTotalBalance(expected.getTotalCurrentBalance());
+                rollup.setAccountsCount(expected.getTotalAccounts().intValue());
+                toSave.add(rollup);
+            }
+        }
+
+        rollupRepository.saveAll(toSave);
+        // Rows left over belong to identities that no longer exist
+        rollupRepository.deleteAll(stored.values());
+
+        LedgerRollupRebuildDTO report = LedgerRollupRebuildDTO.builder()
+                .identitiesScanned(expectedRows.size())
+                .rowsCreated(created)
+                .rowsCorrected(drifts.size() - created)
+                .rowsRemoved(stored.size())
+                .durationMs(System.currentTimeMillis() - start)
+                .drifts(drifts)
+                .build();
+
+        log.info("Ledger rollup rebuilt: {} identities, {} created, {} corrected, {} removed",
+                report.getIdentitiesScanned(), report.getRowsCreated(),
+                report.getRowsCorrected(), report.getRowsRemoved());
+        return report;
+    }
+
+    /**
+     * Ricostruisce il rollup all'avvio (utile dopo il primo deploy su un database esistente)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildAtStartup() {
+        if (rebuildOnStartup) {
+            rebuild();
+        }
+    }
+
+    private void apply(UUID identityId, BigDecimal deposits, BigDecimal withdrawals,
+                       BigDecimal balance, int accounts) {
+        int updated = rollupRepository.applyDelta(identityId, deposits, withdrawals, balance, accounts);
+        if (updated == 0) {
+            // Identities created before the rollup existed are read from the source tables until the next rebuild
+            log.warn("No ledger rollup row for identity {}, run the rollup rebuild", identityId);
+        }
+    }
+
+    private boolean hasDrift(IdentityLedgerRollup rollup, IdentityProfitRow expected) {
+        return rollup.getTotalDeposits().compareTo(expected.getTotalDeposits()) != 0
+                || rollup.getTotalWithdrawals().compareTo(expected.getTotalWithdrawals()) != 0
+                || rollup.getTotalBalance().compareTo(expected.getTotalCurrentBalance()) != 0
+                || rollup.getAccountsCount() != expected.getTotalAccounts().intValue();
+    }
+
+    private LedgerDriftDTO mapToDrift(IdentityLedgerRollup rollup, IdentityProfitRow expected) {
+        return LedgerDriftDTO.builder()
+                .identityId(expected.getIdentityId())
+                .identityFullName(expected.getFirstName() + " " + expected.getLastName())
+                .missing(rollup == null)
+                .storedDeposits(rollup != null ? rollup.getTotalDeposits() : null)
+                .expectedDeposits(expected.getTotalDeposits())
+                .storedWithdrawals(rollup != null ? rollup.getTotalWithdrawals() : null)
+                .expectedWithdrawals(expected.getTotalWithdrawals())
+                .storedBalance(rollup != null ? rollup.getTotalBalance() : null)
+                .expectedBalance(expected.getTotalCurrentBalance())
+                .storedAccounts(rollup != null ? rollup.getAccountsCount() : null)
+                .expectedAccounts(expected.getTotalAccounts().intValue())
+                .build();
+    }
+}
@@ -0,0 +1,246 @@
+package com.betflow.services;
+
+import com.betflow.dto.calculator.MatchedBetRequestDTO;
+import com.betflow.dto.calculator.MatchedBetResultDTO;
+import com.betflow.dto.calculator.ScenarioBatchRequestDTO;
+import com.betflow.dto.calculator.ScenarioBatchResultDTO;
+import com.betflow.entities.Promotion;
+import com.betflow.enums.MatchedBetType;
+import com.betflow.exceptions.BadRequestException;
+import com.betflow.exceptions.ResourceNotFoundException;
+import com.betflow.repositories.PromotionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Calcolatore per il matched betting: puntata lay, responsabilità e profitto per esito di una
+ * scommessa qualificante o di una free bet (puntata non restituita).
+ * Il calcolo è su double con importi arrotondati ai centesimi, come li accetta l'exchange;
+ * in modalità batch le combinazioni di quote sono valutate su array primitivi e solo le migliori
+ * diventano DTO.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MatchedBettingCalculatorService {
+
+    public static final int MAX_BATCH_SCENARIOS = 10_000;
+    public static final int DEFAULT_BATCH_LIMIT = 50;
+    private static final double MIN_ODDS = 1.01;
+    private static final BigDecimal PERCENT = BigDecimal.valueOf(100);
+
+    private final PromotionRepository promotionRepository;
+
+    public MatchedBetResultDTO calculate(MatchedBetRequestDTO request) {
+        MatchedBetType betType = request.getBetType() != null ? request.getBetType() : MatchedBetType.QUALIFYING;
+        return toDTO(null, betType, request.getStake().doubleValue(), request.getBackOdds().doubleValue(),
+                request.getLayOdds().doubleValue(), commissionPercent(request.getCommission()));
+    }
+
+    /**
+     * Valore estraibile dal bonus di una promozione giocato come free bet con le quote indicate
+     */
+    public MatchedBetResultDTO calculatePromotionExtraction(UUID promotionId, BigDecimal backOdds,
+                                                            BigDecimal layOdds, BigDecimal commission) {
+        Promotion promotion = promotionRepository.findById(promotionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Promotion", "id", promotionId));
+        if (promotion.getBonusAmount() == null || promotion.getBonusAmount().signum() <= 0) {
+            throw new BadRequestException("Promotion has no bonus amount to extract");
+        }
+        return calculate(MatchedBetRequestDTO.builder()
+                .stake(promotion.getBonusAmount())
+                .backOdds(backOdds)
+                .layOdds(layOdds)
+                .commission(commission)
+                .betType(MatchedBetType.FREE_BET)
+                .build());
+    }
+
+    /**
+     * Valuta tutte le coppie di quote e restituisce le migliori per profitto garantito
+     */
+    public ScenarioBatchResultDTO evaluateBatch(ScenarioBatchRequestDTO request) {
+        double[] back = request.getBackOdds();
+        double[] lay = request.getLayOdds();
+        if (back.length != lay.length) {
+            throw new BadRequestException("backOdds and layOdds must have the same length");
+        }
+        if (back.length > MAX_BATCH_SCENARIOS) {
+            throw new BadRequestException("At most " + MAX_BATCH_SCENARIOS + " odds pairs per request");
+        }
+
+        long start = System.nanoTime();
+        MatchedBetType betType = request.getBetType() != null ? request.getBetType() : MatchedBetType.QUALIFYING;
+        boolean freeBet = betType == MatchedBetType.FREE_BET;
+        double stake = request.getStake().doubleValue();
+        double commission = commissionPercent(request.getCommission()) / 100;
+        int limit = Math.min(request.getLimit() != null ? request.getLimit() : DEFAULT_BATCH_LIMIT, back.length);
+
+        int[] best = topScenarios(stake, commission, freeBet, back, lay, limit);
+
+        List<MatchedBetResultDTO> scenarios = new ArrayList<>(best.length);
+        for (int index : best) {
+            scenarios.add(toDTO(index, betType, stake, back[index], lay[index], commission * 100));
+        }
+        long durationMicros = (System.nanoTime() - start) / 1000;
+        log.debug("Evaluated {} matched betting scenarios in {} µs", back.length, durationMicros);
+
+        return ScenarioBatchResultDTO.builder()
+                .evaluated(back.length)
+                .durationMicros(durationMicros)
+                .scenarios(scenarios)
+                .build();
+    }
+
+    // ==================== PRIMITIVE MATH ====================
+
+    /**
+     * Puntata lay che pareggia i due esiti, arrotondata ai centesimi.
+     * Qualificante: stake · quotaBack / (quotaLay − commissione); free bet: stake · (quotaBack − 1) / (quotaLay − commissione)
+     */
+    static double layStake(double stake, double backOdds, double layOdds, double commission, boolean freeBet) {
+        double backReturn = freeBet ? stake * (backOdds - 1) : stake * backOdds;
+        return cents(backReturn / (layOdds - commission));
+    }
+
+    static double liability(double layStake, double layOdds) {
+        return cents(layStake * (layOdds - 1));
+    }
+
+    static double profitIfBackWins(double stake, double backOdds, double layStake, double layOdds) {
+        return cents(stake * (backOdds - 1) - layStake * (layOdds - 1));
+    }
+
+    static double profitIfLayWins(double stake, double layStake, double commission, boolean freeBet) {
+        // A free bet stake is not ours, nothing is lost when the back bet loses
+        return cents(layStake * (1 - commission) - (freeBet ? 0 : stake));
+    }
+
+    /**
+     * Indici delle migliori combinazioni, dalla migliore. Un min-heap di dimensione limit su array primitivi
+     * tiene le migliori viste finora, senza oggetti per combinazione.
+     */
+    private static int[] topScenarios(double stake, double commission, boolean freeBet,
+                                      double[] back, double[] lay, int limit) {
+        int[] heap = new int[limit];
+        double[] keys = new double[limit];
+        int size = 0;
+
+        for (int i = 0; i < back.length; i++) {
+            // Negated comparison also rejects NaN; odds beyond the double range arrive as infinity
+            if (!(back[i] >= MIN_ODDS) || !(lay[i] >= MIN_ODDS) || !Double.isFinite(back[i]) || !Double.isFinite(lay[i])) {
+                throw new BadRequestException("Odds must be finite and at least " + MIN_ODDS + " (pair " + i + ")");
+            }
+            double layStake = layStake(stake, back[i], lay[i], commission, freeBet);
+            double guaranteed = Math.min(profitIfBackWins(stake, back[i], layStake, lay[i]),
+                    profitIfLayWins(stake, layStake, commission, freeBet));
+
+            if (size < limit) {
+                heap[size] = i;
+                keys[size] = guaranteed;
+                siftUp(heap, keys, size++);
+            } else if (guaranteed > keys[0]) {
+                heap[0] = i;
+                keys[0] = guaranteed;
+                siftDown(heap, keys, size);
+            }
+        }
+
+        // Popping the minimum fills the result from the end, so the best scenario comes first
+        int[] sorted = new int[size];
+        for (int last = size - 1; last >= 0; last--) {
+            sorted[last] = heap[0];
+            heap[0] = heap[last];
+            keys[0] = keys[last];
+            siftDown(heap, keys, last);
+        }
+        return sorted;
+    }
+
+    private static void siftUp(int[] heap, double[] keys, int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (keys[parent] <= keys[position]) {
+                return;
+            }
+            swap(heap, keys, parent, position);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, double[] keys, int size) {
+        int position = 0;
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && keys[left] < keys[smallest]) {
+                smallest = left;
+            }
+            if (right < size && keys[right] < keys[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(heap, keys, position, smallest);
+            position = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, double[] keys, int a, int b) {
+        int index = heap[a];
+        heap[a] = heap[b];
+        heap[b] = index;
+        double key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+    }
+
+    private static double cents(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+
+    // ==================== MAPPING ====================
+
+    private MatchedBetResultDTO toDTO(Integer index, MatchedBetType betType, double stake,
+                                      double backOdds, double layOdds, double commissionPercent) {
+        boolean freeBet = betType == MatchedBetType.FREE_BET;
+        double commission = commissionPercent / 100;
+        double layStake = layStake(stake, backOdds, layOdds, commission, freeBet);
+        double backWins = profitIfBackWins(stake, backOdds, layStake, layOdds);
+        double layWins = profitIfLayWins(stake, layStake, commission, freeBet);
+        double guaranteed = Math.min(backWins, layWins);
+
+        return MatchedBetResultDTO.builder()
+                .index(index)
+                .betType(betType)
+                .stake(amount(stake))
+                .backOdds(BigDecimal.valueOf(backOdds))
+                .layOdds(BigDecimal.valueOf(layOdds))
+                .commission(BigDecimal.valueOf(commissionPercent))
+                .layStake(amount(layStake))
+                .liability(amount(liability(layStake, layOdds)))
+                .profitIfBackWins(amount(backWins))
+                .profitIfLayWins(amount(layWins))
+                .guaranteedProfit(amount(guaranteed))
+                .rating(BigDecimal.valueOf(guaranteed).multiply(PERCENT)
+                        .divide(BigDecimal.valueOf(stake), 2, RoundingMode.HALF_UP))
+                .build();
+    }
+
+    private static BigDecimal amount(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static double commissionPercent(BigDecimal commission) {
+        return commission != null ? commission.doubleValue() : 0;
+    }
+}
@@ -0,0 +1,143 @@
+package com.betflow.services;
+
+import com.betflow.dto.operation.OperationExportRowDTO;
+import com.betflow.entities.OperationHistoryEntry;
+import com.betflow.enums.OperationFileFormat;
+import com.betflow.exceptions.BadRequestException;
+import com.betflow.repositories.OperationHistoryRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Export delle operazioni in CSV o NDJSON scritto direttamente sulla risposta.
+ * Le righe sono lette dallo storico piatto con un cursore forward-only e il contesto di persistenza viene svuotato
+ * a ogni blocco, quindi la memoria usata non dipende dal numero di operazioni esportate.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OperationExportService {
+
+    // Rows detached from the persistence context at a time, same as the cursor fetch size
+    private static final int CHUNK_SIZE = 500;
+    private static final LocalDateTime MIN_DATE = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_DATE = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    private static final String CSV_HEADER = "id,type,accountId,accountUsername,platformName,amount,operationDate," +
+            "notes,paymentMethod,status,arrivalDate,eventName,odds,outcome";
+
+    private final OperationHistoryRepository operationHistoryRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Valida l'intervallo prima che la risposta inizi (dopo non è più possibile restituire un errore)
+     */
+    public void validateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw new BadRequestException("startDate must not be after endDate");
+        }
+    }
+
+    /**
+     * Scrive le operazioni dell'intervallo (estremi opzionali) ordinate per data.
+     * Viene eseguito fuori dalla richiesta, quindi apre una propria transazione in sola lettura.
+     */
+    public long exportOperations(LocalDateTime startDate, LocalDateTime endDate,
+                                 OperationFileFormat format, OutputStream output) {
+        long start = System.currentTimeMillis();
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        Long rows = readOnlyTransaction.execute(status -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            long count = 0;
+
+            try (Stream<OperationHistoryEntry> operations = operationHistoryRepository.streamByDateRange(
+                    startDate != null ? startDate : MIN_DATE, endDate != null ? endDate : MAX_DATE)) {
+                if (format == OperationFileFormat.CSV) {
+                    writer.write(CSV_HEADER);
+                    writer.write('\n');
+                }
+
+                Iterator<OperationHistoryEntry> iterator = operations.iterator();
+                while (iterator.hasNext()) {
+                    OperationExportRowDTO row = mapToRow(iterator.next());
+                    writer.write(format == OperationFileFormat.CSV ? toCsv(row) : objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+
+                    if (++count % CHUNK_SIZE == 0) {
+                        // Rows already written are no longer referenced by the session
+                        entityManager.clear();
+                        writer.flush();
+                    }
+                }
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return count;
+        });
+
+        log.info("Exported {} operations as {} in {} ms", rows, format, System.currentTimeMillis() - start);
+        return rows != null ? rows : 0;
+    }
+
+    private OperationExportRowDTO mapToRow(OperationHistoryEntry entry) {
+        return OperationExportRowDTO.builder()
+                .id(entry.getId())
+                .type(entry.getOperationType())
+                .accountId(entry.getAccountId())
+                .accountUsername(entry.getAccountUsername())
+                .platformName(entry.getPlatformName())
+                .amount(entry.getAmount())
+                .operationDate(entry.getOperationDate())
+                .notes(entry.getNotes())
+                .paymentMethod(entry.getPaymentMethod())
+                .status(entry.getStatus())
+                .arrivalDate(entry.getArrivalDate())
+                .eventName(entry.getEventName())
+                .odds(entry.getOdds())
+                .outcome(entry.getOutcome())
+                .build();
+    }
+
+    private String toCsv(OperationExportRowDTO row) {
+        return String.join(",",
+                csv(row.getId()), csv(row.getType()), csv(row.getAccountId()), csv(row.getAccountUsername()),
+                csv(row.getPlatformName()), csv(row.getAmount() != null ? row.getAmount().toPlainString() : null),
+                csv(row.getOperationDate()), csv(row.getNotes()), csv(row.getPaymentMethod()),
+                csv(row.getStatus()), csv(row.getArrivalDate()), csv(row.getEventName()),
+                csv(row.getOdds() != null ? row.getOdds().toPlainString() : null), csv(row.getOutcome()));
+    }
+
+    /**
+     * Valore CSV, tra virgolette solo se contiene separatori, virgolette o a capo
+     */
+    private String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
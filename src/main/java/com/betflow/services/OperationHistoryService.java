@@ -0,0 +1,165 @@
+package com.betflow.services;
+
+import com.betflow.dto.operation.OperationHistoryRebuildDTO;
+import com.betflow.entities.*;
+import com.betflow.enums.BetOutcome;
+import com.betflow.repositories.FinancialOperationRepository;
+import com.betflow.repositories.OperationHistoryRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Mantiene lo storico piatto delle operazioni (operation_history).
+ * Ogni nuova operazione aggiunge una riga; esiti, stati dei prelievi e nomi di conto
+ * e piattaforma vengono aggiornati sul posto nella transazione che li modifica.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OperationHistoryService {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final OperationHistoryRepository historyRepository;
+    private final FinancialOperationRepository financialOperationRepository;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(FinancialOperation operation) {
+        Account account = operation.getAccount();
+        record(operation, account.getId(), account.getUsername(), account.getIdentity().getId(),
+                account.getPlatform().getId(), account.getPlatform().getName());
+    }
+
+    /**
+     * Variante per l'import in blocco, con i dati del conto già noti al chiamante
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(FinancialOperation operation, UUID accountId, String accountUsername,
+                              UUID identityId, UUID platformId, String platformName) {
+        record(operation, accountId, accountUsername, identityId, platformId, platformName);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordWithdrawalUpdated(Withdrawal withdrawal) {
+        historyRepository.updateWithdrawal(withdrawal.getId(), withdrawal.getStatus(), withdrawal.getArrivalDate());
+    }
+
+    /**
+     * Riporta sullo storico gli esiti delle scommesse appena chiuse
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBetsSettled(Map<UUID, BetOutcome> outcomes) {
+        if (outcomes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("UPDATE operation_history SET outcome = ? WHERE id = ?",
+                new ArrayList<>(outcomes.entrySet()), BATCH_SIZE, (ps, entry) -> {
+                    ps.setString(1, entry.getValue().name());
+                    ps.setObject(2, entry.getKey());
+                });
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDeleted(UUID operationId) {
+        historyRepository.deleteByOperationId(operationId);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void renameAccount(UUID accountId, String username) {
+        historyRepository.renameAccount(accountId, username);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void renamePlatform(UUID platformId, String name) {
+        historyRepository.renamePlatform(platformId, name);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removeAccount(UUID accountId) {
+        historyRepository.deleteByAccountId(accountId);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removeIdentity(UUID identityId) {
+        historyRepository.deleteByIdentityId(identityId);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removePlatform(UUID platformId) {
+        historyRepository.deleteByPlatformId(platformId);
+    }
+
+    /**
+     * Ricostruisce lo storico dalle operazioni esistenti (backfill o correzione)
+     */
+    @Transactional
+    public OperationHistoryRebuildDTO rebuild() {
+        long start = System.currentTimeMillis();
+
+        // Waits for in-flight writers and blocks new ones until commit (reads still go through),
+        // so no operation can add its row between the delete and the INSERT ... SELECT.
+        // Postgres syntax: the tests on H2 never rebuild the history
+        jdbcTemplate.execute("LOCK TABLE operation_history IN EXCLUSIVE MODE");
+        historyRepository.deleteAllInBatch();
+        int inserted = historyRepository.insertAllFromOperations();
+
+        OperationHistoryRebuildDTO report = OperationHistoryRebuildDTO.builder()
+                .rowsInserted(inserted)
+                .durationMs(System.currentTimeMillis() - start)
+                .build();
+        log.info("Operation history rebuilt: {} rows in {} ms", inserted, report.getDurationMs());
+        return report;
+    }
+
+    /**
+     * Al primo avvio su un database esistente lo storico è vuoto: viene popolato una volta
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillAtStartup() {
+        if (historyRepository.count() == 0 && financialOperationRepository.count() > 0) {
+            rebuild();
+        }
+    }
+
+    private void record(FinancialOperation operation, UUID accountId, String accountUsername,
+                        UUID identityId, UUID platformId, String platformName) {
+        OperationHistoryEntry.OperationHistoryEntryBuilder entry = OperationHistoryEntry.builder()
+                .id(operation.getId())
+                .operationType(operation.getOperationType())
+                .operationDate(operation.getOperationDate())
+                .amount(operation.getAmount())
+                .notes(operation.getNotes())
+                .accountId(accountId)
+                .accountUsername(accountUsername)
+                .identityId(identityId)
+                .platformId(platformId)
+                .platformName(platformName);
+
+        if (operation instanceof Deposit deposit) {
+            entry.paymentMethod(deposit.getPaymentMethod());
+        } else if (operation instanceof Withdrawal withdrawal) {
+            entry.status(withdrawal.getStatus())
+                    .arrivalDate(withdrawal.getArrivalDate());
+        } else if (operation instanceof BetOperation bet) {
+            entry.eventName(bet.getEventName())
+                    .odds(bet.getOdds())
+                    .outcome(bet.getOutcome());
+        }
+        // The id is assigned, persist avoids the select that save() would issue to tell insert from merge
+        entityManager.persist(entry.build());
+    }
+}
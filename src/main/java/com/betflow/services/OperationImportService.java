@@ -0,0 +1,419 @@
+package com.betflow.services;
+
+import com.betflow.dto.operation.OperationImportErrorDTO;
+import com.betflow.dto.operation.OperationImportResultDTO;
+import com.betflow.dto.operation.OperationImportRowDTO;
+import com.betflow.entities.*;
+import com.betflow.enums.BetOutcome;
+import com.betflow.enums.OperationFileFormat;
+import com.betflow.enums.WithdrawalStatus;
+import com.betflow.events.DomainDataChangedEvent;
+import com.betflow.events.OpenBetsChangedEvent;
+import com.betflow.events.OpenBetsChangedEvent.OpenBet;
+import com.betflow.exceptions.BadRequestException;
+import com.betflow.repositories.AccountRepository;
+import com.betflow.repositories.AccountRepository.AccountKeysRow;
+import com.betflow.repositories.FinancialOperationRepository;
+import com.betflow.services.PromotionService.QualifyingStake;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Import in blocco di depositi, prelievi e scommesse da CSV o NDJSON.
+ * Il file viene letto riga per riga; le righe valide sono inserite a blocchi (chunk),
+ * ognuno nella propria transazione con insert JDBC in batch, e le variazioni di saldo,
+ * rollup e bucket giornalieri sono applicate una volta per conto alla fine di ogni blocco.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OperationImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final BigDecimal MIN_ODDS = new BigDecimal("1.01");
+
+    private final FinancialOperationRepository financialOperationRepository;
+    private final AccountRepository accountRepository;
+    private final LedgerRollupService ledgerRollupService;
+    private final ProfitTimeSeriesService profitTimeSeriesService;
+    private final OperationHistoryService operationHistoryService;
+    private final PromotionService promotionService;
+    private final ConcurrencyRetryService concurrencyRetryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+
+    @Value("${betflow.import.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Importa le operazioni lette dallo stream. Le righe non valide sono scartate e riportate
+     * con il numero di riga; un blocco che fallisce in scrittura viene annullato per intero.
+     */
+    public OperationImportResultDTO importOperations(InputStream input, OperationFileFormat format) {
+        long start = System.currentTimeMillis();
+
+        // Preloaded once: rows are validated without touching the database
+        Map<UUID, AccountKeysRow> accounts = accountRepository.findAllAccountKeys().stream()
+                .collect(Collectors.toMap(AccountKeysRow::getAccountId, Function.identity()));
+
+        OperationImportResultDTO result = OperationImportResultDTO.builder()
+                .format(format)
+                .errors(new ArrayList<>())
+                .build();
+        Set<UUID> accountsUpdated = new HashSet<>();
+        List<ImportedRow> chunk = new ArrayList<>(chunkSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            Map<String, Integer> header = null;
+            long lineNumber = 0;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == OperationFileFormat.CSV && header == null) {
+                    header = parseHeader(line);
+                    continue;
+                }
+
+                result.setRowsRead(result.getRowsRead() + 1);
+                try {
+                    OperationImportRowDTO row = format == OperationFileFormat.CSV
+                            ? parseCsvRow(header, line)
+                            : objectMapper.readValue(line, OperationImportRowDTO.class);
+                    chunk.add(new ImportedRow(lineNumber, row, validate(row, accounts)));
+                } catch (JsonProcessingException e) {
+                    reject(result, lineNumber, "Invalid JSON: " + e.getOriginalMessage());
+                } catch (BadRequestException e) {
+                    reject(result, lineNumber, e.getMessage());
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    importChunk(chunk, result, accountsUpdated);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, result, accountsUpdated);
+            }
+        } catch (IOException e) {
+            throw new BadRequestException("Import stream interrupted after " + result.getRowsImported()
+                    + " imported rows: " + e.getMessage());
+        } finally {
+            if (result.getRowsImported() > 0) {
+                eventPublisher.publishEvent(new DomainDataChangedEvent("FinancialOperation"));
+            }
+        }
+
+        long durationMs = System.currentTimeMillis() - start;
+        result.setDurationMs(durationMs);
+        result.setAccountsUpdated(accountsUpdated.size());
+        result.setRowsPerSecond(Math.round(result.getRowsImported() * 10000.0 / Math.max(durationMs, 1)) / 10.0);
+
+        log.info("Imported {} of {} {} rows in {} chunks ({} ms, {} rows/s), {} rejected",
+                result.getRowsImported(), result.getRowsRead(), format, result.getChunks(),
+                durationMs, result.getRowsPerSecond(), result.getRowsRejected());
+        return result;
+    }
+
+    // ==================== CHUNKS ====================
+
+    private void importChunk(List<ImportedRow> chunk, OperationImportResultDTO result, Set<UUID> accountsUpdated) {
+        result.setChunks(result.getChunks() + 1);
+        try {
+            concurrencyRetryService.execute("importOperations", () -> persistChunk(chunk));
+            result.setRowsImported(result.getRowsImported() + chunk.size());
+            chunk.forEach(row -> accountsUpdated.add(row.account().getAccountId()));
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Import chunk {} rolled back: {}", result.getChunks(), e.getMessage());
+            String message = "Chunk rolled back: " + e.getMostSpecificCause().getMessage();
+            chunk.forEach(row -> reject(result, row.line(), message));
+        }
+    }
+
+    private int persistChunk(List<ImportedRow> chunk) {
+        return persistOperations(chunk.stream().map(ImportedRow::row).toList(),
+                chunk.stream().map(ImportedRow::account).toList()).size();
+    }
+
+    /**
+     * Inserisce righe già validate (accounts.get(i) è il conto di rows.get(i)) applicando saldi,
+     * rollup e bucket giornalieri una volta per conto. Va chiamato dentro una transazione.
+     */
+    List<FinancialOperation> persistOperations(List<OperationImportRowDTO> rows, List<AccountKeysRow> accounts) {
+        List<FinancialOperation> operations = new ArrayList<>(rows.size());
+        // Sorted maps so that rows are always locked in the same order
+        Map<UUID, OperationTotals> accountTotals = new TreeMap<>();
+        Map<UUID, OperationTotals> identityTotals = new TreeMap<>();
+        Map<BucketKey, OperationTotals> bucketTotals = new LinkedHashMap<>();
+
+        for (int i = 0; i < rows.size(); i++) {
+            FinancialOperation operation = toEntity(rows.get(i));
+            operations.add(operation);
+
+            AccountKeysRow account = accounts.get(i);
+            BucketKey key = new BucketKey(account.getAccountId(), account.getIdentityId(),
+                    account.getPlatformId(), operation.getOperationDate().toLocalDate());
+            accountTotals.computeIfAbsent(account.getAccountId(), id -> new OperationTotals()).add(operation);
+            identityTotals.computeIfAbsent(account.getIdentityId(), id -> new OperationTotals()).add(operation);
+            bucketTotals.computeIfAbsent(key, k -> new OperationTotals()).add(operation);
+        }
+
+        // Ids are generated client side, so Hibernate groups the inserts per table into JDBC batches
+        financialOperationRepository.saveAll(operations);
+        List<OpenBet> openBets = new ArrayList<>();
+        List<QualifyingStake> rolloverStakes = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            AccountKeysRow account = accounts.get(i);
+            operationHistoryService.recordCreated(operations.get(i), account.getAccountId(), account.getUsername(),
+                    account.getIdentityId(), account.getPlatformId(), account.getPlatformName());
+            if (operations.get(i) instanceof BetOperation bet) {
+                if (bet.getOutcome() == null) {
+                    openBets.add(new OpenBet(bet.getId(), account.getAccountId(), account.getIdentityId(),
+                            bet.getEventName(), bet.getAmount(), bet.getOdds()));
+                } else if (PromotionService.countsTowardsRollover(bet.getOutcome())) {
+                    rolloverStakes.add(new QualifyingStake(account.getAccountId(), bet.getOdds(), bet.getAmount()));
+                }
+            }
+        }
+        financialOperationRepository.flush();
+
+        // Also with a zero net delta: the account row lock serializes the bucket UPDATE-then-INSERT below
+        accountTotals.forEach((accountId, totals) ->
+                accountRepository.addToBalance(accountId, totals.balanceDelta()));
+        identityTotals.forEach((identityId, totals) -> ledgerRollupService.recordTotals(
+                identityId, totals.deposits, totals.withdrawals, totals.balanceDelta()));
+        bucketTotals.forEach((key, totals) -> profitTimeSeriesService.recordDailyTotals(
+                key.accountId(), key.identityId(), key.platformId(), key.date(),
+                totals.deposits, totals.withdrawals, totals.stakes, totals.winnings));
+        // Settled rows count towards the rollover as if they had been settled here
+        promotionService.accrueRollover(rolloverStakes);
+
+        // Keeps the persistence context (open for the whole request) from growing with every chunk
+        financialOperationRepository.flush();
+        entityManager.clear();
+        if (!openBets.isEmpty()) {
+            eventPublisher.publishEvent(OpenBetsChangedEvent.opened(openBets));
+        }
+        return operations;
+    }
+
+    private FinancialOperation toEntity(OperationImportRowDTO row) {
+        Account account = accountRepository.getReferenceById(row.getAccountId());
+        LocalDateTime operationDate = row.getOperationDate() != null ? row.getOperationDate() : LocalDateTime.now();
+
+        return switch (row.getType().toUpperCase()) {
+            case "DEPOSIT" -> Deposit.builder()
+                    .amount(row.getAmount())
+                    .notes(row.getNotes())
+                    .paymentMethod(row.getPaymentMethod())
+                    .account(account)
+                    .operationDate(operationDate)
+                    .build();
+            case "WITHDRAWAL" -> Withdrawal.builder()
+                    .amount(row.getAmount())
+                    .notes(row.getNotes())
+                    .status(row.getStatus() != null ? row.getStatus() : WithdrawalStatus.REQUESTED)
+                    .arrivalDate(row.getArrivalDate())
+                    .account(account)
+                    .operationDate(operationDate)
+                    .build();
+            default -> BetOperation.builder()
+                    .amount(row.getAmount())
+                    .notes(row.getNotes())
+                    .eventName(row.getEventName())
+                    .odds(row.getOdds())
+                    .outcome(row.getOutcome())
+                    .account(account)
+                    .operationDate(operationDate)
+                    .build();
+        };
+    }
+
+    // ==================== PARSING ====================
+
+    private AccountKeysRow validate(OperationImportRowDTO row, Map<UUID, AccountKeysRow> accounts) {
+        if (row.getType() == null || row.getType().isBlank()) {
+            throw new BadRequestException("type is required (DEPOSIT, WITHDRAWAL or BET)");
+        }
+        if (row.getAccountId() == null) {
+            throw new BadRequestException("accountId is required");
+        }
+        AccountKeysRow account = accounts.get(row.getAccountId());
+        if (account == null) {
+            throw new BadRequestException("Account not found: " + row.getAccountId());
+        }
+        if (row.getAmount() == null || row.getAmount().signum() <= 0) {
+            throw new BadRequestException("amount must be greater than 0");
+        }
+
+        switch (row.getType().toUpperCase()) {
+            case "DEPOSIT" -> {
+                if (row.getPaymentMethod() == null || row.getPaymentMethod().isBlank()) {
+                    throw new BadRequestException("paymentMethod is required for deposits");
+                }
+            }
+            case "WITHDRAWAL" -> {
+            }
+            case "BET" -> {
+                if (row.getEventName() == null || row.getEventName().isBlank()) {
+                    throw new BadRequestException("eventName is required for bets");
+                }
+                if (row.getOdds() == null || row.getOdds().compareTo(MIN_ODDS) < 0) {
+                    throw new BadRequestException("odds must be at least " + MIN_ODDS);
+                }
+            }
+            default -> throw new BadRequestException("Unknown operation type: " + row.getType());
+        }
+        return account;
+    }
+
+    private Map<String, Integer> parseHeader(String line) {
+        List<String> columns = splitCsvLine(line);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            header.put(columns.get(i).trim().toLowerCase(), i);
+        }
+        if (!header.containsKey("type") || !header.containsKey("accountid") || !header.containsKey("amount")) {
+            throw new BadRequestException("CSV header must contain at least type, accountId and amount");
+        }
+        return header;
+    }
+
+    private OperationImportRowDTO parseCsvRow(Map<String, Integer> header, String line) {
+        List<String> values = splitCsvLine(line);
+        return OperationImportRowDTO.builder()
+                .type(column(header, values, "type", Function.identity()))
+                .accountId(column(header, values, "accountId", UUID::fromString))
+                .amount(column(header, values, "amount", BigDecimal::new))
+                .operationDate(column(header, values, "operationDate", LocalDateTime::parse))
+                .notes(column(header, values, "notes", Function.identity()))
+                .paymentMethod(column(header, values, "paymentMethod", Function.identity()))
+                .status(column(header, values, "status", value -> WithdrawalStatus.valueOf(value.toUpperCase())))
+                .arrivalDate(column(header, values, "arrivalDate", LocalDateTime::parse))
+                .eventName(column(header, values, "eventName", Function.identity()))
+                .odds(column(header, values, "odds", BigDecimal::new))
+                .outcome(column(header, values, "outcome", value -> BetOutcome.valueOf(value.toUpperCase())))
+                .build();
+    }
+
+    private <T> T column(Map<String, Integer> header, List<String> values, String name, Function<String, T> parser) {
+        Integer index = header.get(name.toLowerCase());
+        if (index == null || index >= values.size() || values.get(index).isBlank()) {
+            return null;
+        }
+        String value = values.get(index).trim();
+        try {
+            return parser.apply(value);
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Divide una riga CSV rispettando i campi tra virgolette ("" per una virgoletta nel valore)
+     */
+    private List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private void reject(OperationImportResultDTO result, long line, String message) {
+        result.setRowsRejected(result.getRowsRejected() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new OperationImportErrorDTO(line, message));
+        } else {
+            result.setErrorsTruncated(true);
+        }
+    }
+
+    private record ImportedRow(long line, OperationImportRowDTO row, AccountKeysRow account) {
+    }
+
+    private record BucketKey(UUID accountId, UUID identityId, UUID platformId, LocalDate date) {
+    }
+
+    /**
+     * Totali delle operazioni importate per conto, identità o giorno
+     */
+    private static class OperationTotals {
+        private BigDecimal deposits = BigDecimal.ZERO;
+        private BigDecimal withdrawals = BigDecimal.ZERO;
+        private BigDecimal stakes = BigDecimal.ZERO;
+        private BigDecimal winnings = BigDecimal.ZERO;
+
+        void add(FinancialOperation operation) {
+            // Same rounding the numeric(19,2) column applies to the stored amount
+            BigDecimal amount = operation.getAmount().setScale(2, RoundingMode.HALF_UP);
+            if (operation instanceof Deposit) {
+                deposits = deposits.add(amount);
+            } else if (operation instanceof Withdrawal) {
+                withdrawals = withdrawals.add(amount);
+            } else if (operation instanceof BetOperation bet) {
+                // Settled bets in the statement also carry their payout, rounded per bet
+                stakes = stakes.add(amount);
+                winnings = winnings.add(BetSettlementService.payout(amount, bet.getOdds(), bet.getOutcome()));
+            }
+        }
+
+        BigDecimal balanceDelta() {
+            return deposits.subtract(withdrawals).subtract(stakes).add(winnings);
+        }
+    }
+}
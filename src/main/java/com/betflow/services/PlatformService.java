@@ -1,18 +1,29 @@
 package com.betflow.services;
 
+import com.betflow.dto.pagination.CursorPageDTO;
+import com.betflow.dto.pagination.PageCursor;
 import com.betflow.dto.platform.PlatformDTO;
+import com.betflow.entities.Account;
 import com.betflow.entities.Platform;
 import com.betflow.enums.PlatformType;
+import com.betflow.events.DomainDataChangedEvent;
+import com.betflow.events.OpenBetsChangedEvent;
 import com.betflow.exceptions.DuplicateResourceException;
 import com.betflow.exceptions.ResourceNotFoundException;
+import com.betflow.repositories.AccountRepository;
+import com.betflow.repositories.AccountRepository.CountRow;
+import com.betflow.repositories.FinancialOperationRepository;
 import com.betflow.repositories.PlatformRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,11 +32,25 @@ import java.util.stream.Collectors;
 public class PlatformService {
 
     private final PlatformRepository platformRepository;
+    private final AccountRepository accountRepository;
+    private final FinancialOperationRepository financialOperationRepository;
+    private final LedgerRollupService ledgerRollupService;
+    private final ProfitTimeSeriesService profitTimeSeriesService;
+    private final OperationHistoryService operationHistoryService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<PlatformDTO> getAllPlatforms() {
-        return platformRepository.findAll().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        return mapToDTOs(platformRepository.findAll());
+    }
+
+    /**
+     * Pagina di piattaforme ordinate per nome; cursor è il token restituito dalla pagina precedente
+     */
+    public CursorPageDTO<PlatformDTO> getPlatformsPage(String cursor, Integer size) {
+        int pageSize = PageCursor.pageSize(size);
+        List<Platform> platforms = platformRepository.findPage(PageCursor.decode(cursor), pageSize);
+        return PageCursor.toPage(platforms, pageSize,
+                platform -> new PageCursor(platform.getName(), platform.getId()), mapper(platforms));
     }
 
     public PlatformDTO getPlatformById(UUID id) {
@@ -35,15 +60,11 @@ public class PlatformService {
     }
 
     public List<PlatformDTO> getPlatformsByType(PlatformType type) {
-        return platformRepository.findByType(type).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        return mapToDTOs(platformRepository.findByType(type));
     }
 
     public List<PlatformDTO> searchPlatforms(String name) {
-        return platformRepository.findByNameContainingIgnoreCase(name).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        return mapToDTOs(platformRepository.findByNameContainingIgnoreCase(name));
     }
 
     @Transactional
@@ -59,6 +80,7 @@ public class PlatformService {
                 .build();
 
         Platform savedPlatform = platformRepository.save(platform);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Platform"));
         log.info("Platform created: {}", savedPlatform.getName());
         return mapToDTO(savedPlatform);
     }
@@ -73,6 +95,7 @@ public class PlatformService {
                 throw new DuplicateResourceException("Platform", "name", dto.getName());
             }
             platform.setName(dto.getName());
+            operationHistoryService.renamePlatform(id, dto.getName());
         }
 
         if (dto.getWebsiteUrl() != null) {
@@ -84,6 +107,7 @@ public class PlatformService {
         }
 
         Platform savedPlatform = platformRepository.save(platform);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Platform"));
         log.info("Platform updated: {}", savedPlatform.getName());
         return mapToDTO(savedPlatform);
     }
@@ -93,17 +117,49 @@ public class PlatformService {
         Platform platform = platformRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Platform", "id", id));
 
+        // Accounts on the platform are deleted in cascade
+        platform.getAccounts().forEach(account -> ledgerRollupService.recordAccountDeleted(
+                account.getIdentity().getId(), account.getCurrentBalance(),
+                financialOperationRepository.sumDepositsByAccountId(account.getId()),
+                financialOperationRepository.sumWithdrawalsByAccountId(account.getId())));
+        profitTimeSeriesService.removePlatform(id);
+        operationHistoryService.removePlatform(id);
+        List<UUID> accountIds = platform.getAccounts().stream().map(Account::getId).toList();
         platformRepository.delete(platform);
+        // Open bets of the deleted accounts go with them in cascade
+        eventPublisher.publishEvent(OpenBetsChangedEvent.accountsRemoved(accountIds));
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Platform"));
         log.info("Platform deleted: {}", platform.getName());
     }
 
     private PlatformDTO mapToDTO(Platform platform) {
+        return mapper(List.of(platform)).apply(platform);
+    }
+
+    private List<PlatformDTO> mapToDTOs(List<Platform> platforms) {
+        return platforms.stream().map(mapper(platforms)).toList();
+    }
+
+    /**
+     * Mapper per una lista di piattaforme: i conti sono contati con una query raggruppata per tutta la lista
+     */
+    private Function<Platform, PlatformDTO> mapper(List<Platform> platforms) {
+        if (platforms.isEmpty()) {
+            return platform -> mapToDTO(platform, 0);
+        }
+        List<UUID> ids = platforms.stream().map(Platform::getId).toList();
+        Map<UUID, Long> accounts = AccountRepository.countByIds(ids, accountRepository::countByPlatformIds).stream()
+                .collect(Collectors.toMap(CountRow::getId, CountRow::getTotal));
+        return platform -> mapToDTO(platform, accounts.getOrDefault(platform.getId(), 0L).intValue());
+    }
+
+    private PlatformDTO mapToDTO(Platform platform, int accountsCount) {
         return PlatformDTO.builder()
                 .id(platform.getId())
                 .name(platform.getName())
                 .websiteUrl(platform.getWebsiteUrl())
                 .type(platform.getType())
-                .accountsCount(platform.getAccounts() != null ? platform.getAccounts().size() : 0)
+                .accountsCount(accountsCount)
                 .build();
     }
 }
@@ -0,0 +1,282 @@
+package com.betflow.services;
+
+import com.betflow.dto.statistics.ProfitBucketDTO;
+import com.betflow.dto.statistics.ProfitBucketRebuildDTO;
+import com.betflow.entities.Account;
+import com.betflow.entities.BetOperation;
+import com.betflow.entities.Deposit;
+import com.betflow.entities.FinancialOperation;
+import com.betflow.entities.ProfitDailyBucket;
+import com.betflow.entities.Withdrawal;
+import com.betflow.enums.TimeSeriesGranularity;
+import com.betflow.exceptions.BadRequestException;
+import com.betflow.exceptions.ResourceNotFoundException;
+import com.betflow.repositories.AccountRepository;
+import com.betflow.repositories.IdentityRepository;
+import com.betflow.repositories.PlatformRepository;
+import com.betflow.repositories.ProfitDailyBucketRepository;
+import com.betflow.repositories.ProfitDailyBucketRepository.DailyTotalsRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Serie storiche di depositi, prelievi, puntate e vincite per conto, identità e piattaforma.
+ * I bucket giornalieri sono aggiornati nella transazione di ogni operazione;
+ * settimane e mesi sono calcolati sommando i giorni.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProfitTimeSeriesService {
+
+    private static final int DEFAULT_RANGE_DAYS = 30;
+    private static final int MAX_RANGE_DAYS = 3 * 366;
+
+    private final ProfitDailyBucketRepository bucketRepository;
+    private final IdentityRepository identityRepository;
+    private final AccountRepository accountRepository;
+    private final PlatformRepository platformRepository;
+
+    // ==================== INCREMENTAL UPDATES ====================
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDeposit(Deposit deposit) {
+        apply(deposit.getAccount(), deposit.getOperationDate().toLocalDate(),
+                deposit.getAmount(), BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordWithdrawal(Withdrawal withdrawal) {
+        apply(withdrawal.getAccount(), withdrawal.getOperationDate().toLocalDate(),
+                BigDecimal.ZERO, withdrawal.getAmount(), BigDecimal.ZERO, BigDecimal.ZERO);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBetPlaced(BetOperation bet) {
+        apply(bet.getAccount(), bet.getOperationDate().toLocalDate(),
+                BigDecimal.ZERO, BigDecimal.ZERO, bet.getAmount(), BigDecimal.ZERO);
+    }
+
+    /**
+     * Registra l'importo restituito dalle scommesse chiuse, nel giorno in cui erano state piazzate
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBetReturn(UUID accountId, UUID identityId, UUID platformId,
+                                LocalDate betDate, BigDecimal returned) {
+        if (returned.signum() != 0) {
+            apply(accountId, identityId, platformId, betDate,
+                    BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, returned);
+        }
+    }
+
+    /**
+     * Somma al bucket giornaliero i totali di piu' operazioni dello stesso conto (import in blocco)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDailyTotals(UUID accountId, UUID identityId, UUID platformId, LocalDate date,
+                                  BigDecimal deposits, BigDecimal withdrawals,
+                                  BigDecimal stakes, BigDecimal winnings) {
+        apply(accountId, identityId, platformId, date, deposits, withdrawals, stakes, winnings);
+    }
+
+    /**
+     * Toglie dai bucket tutto ciò che l'operazione eliminata aveva contribuito
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordOperationDeleted(FinancialOperation operation) {
+        BigDecimal amount = operation.getAmount().negate();
+        LocalDate date = operation.getOperationDate().toLocalDate();
+
+        if (operation instanceof Deposit) {
+            apply(operation.getAccount(), date, amount, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+        } else if (operation instanceof Withdrawal) {
+            apply(operation.getAccount(), date, BigDecimal.ZERO, amount, BigDecimal.ZERO, BigDecimal.ZERO);
+        } else if (operation instanceof BetOperation bet) {
+            apply(operation.getAccount(), date, BigDecimal.ZERO, BigDecimal.ZERO, amount,
+                    BetSettlementService.payout(bet.getAmount(), bet.getOdds(), bet.getOutcome()).negate());
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removeAccount(UUID accountId) {
+        bucketRepository.deleteByAccountId(accountId);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removeIdentity(UUID identityId) {
+        bucketRepository.deleteByIdentityId(identityId);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removePlatform(UUID platformId) {
+        bucketRepository.deleteByPlatformId(platformId);
+    }
+
+    /**
+     * Ricostruisce tutti i bucket dalle operazioni esistenti (backfill o correzione)
+     */
+    @Transactional
+    public ProfitBucketRebuildDTO rebuild() {
+        long start = System.currentTimeMillis();
+
+        // Every bucket writer first takes its account row lock: holding all of them keeps
+        // apply() from inserting a bucket between the delete and the reinsert
+        accountRepository.lockAllAccounts();
+        bucketRepository.deleteAllInBatch();
+        List<ProfitDailyBucket> buckets = bucketRepository.aggregateOperationsByAccountAndDay().stream()
+                .map(row -> ProfitDailyBucket.builder()
+                        .accountId(row.getAccountId())
+                        .identityId(row.getIdentityId())
+                        .platformId(row.getPlatformId())
+                        .bucketDate(row.getBucketDate())
+                        .deposits(row.getDeposits())
+                        .withdrawals(row.getWithdrawals())
+                        .stakes(row.getStakes())
+                        .winnings(row.getWinnings())
+                        .build())
+                .collect(Collectors.toList());
+        bucketRepository.saveAll(buckets);
+
+        log.info("Profit buckets rebuilt: {} daily buckets", buckets.size());
+        return ProfitBucketRebuildDTO.builder()
+                .bucketsCreated(buckets.size())
+                .durationMs(System.currentTimeMillis() - start)
+                .build();
+    }
+
+    // ==================== SERIES ====================
+
+    public List<ProfitBucketDTO> getIdentitySeries(UUID identityId, LocalDate from, LocalDate to,
+                                                   TimeSeriesGranularity granularity) {
+        if (!identityRepository.existsById(identityId)) {
+            throw new ResourceNotFoundException("Identity", "id", identityId);
+        }
+        LocalDate end = resolveEnd(to);
+        LocalDate start = resolveStart(from, end);
+        return rollUp(bucketRepository.findDailyTotalsByIdentity(identityId, start, end), granularity);
+    }
+
+    public List<ProfitBucketDTO> getAccountSeries(UUID accountId, LocalDate from, LocalDate to,
+                                                  TimeSeriesGranularity granularity) {
+        if (!accountRepository.existsById(accountId)) {
+            throw new ResourceNotFoundException("Account", "id", accountId);
+        }
+        LocalDate end = resolveEnd(to);
+        LocalDate start = resolveStart(from, end);
+        return rollUp(bucketRepository.findDailyTotalsByAccount(accountId, start, end), granularity);
+    }
+
+    public List<ProfitBucketDTO> getPlatformSeries(UUID platformId, LocalDate from, LocalDate to,
+                                                   TimeSeriesGranularity granularity) {
+        if (!platformRepository.existsById(platformId)) {
+            throw new ResourceNotFoundException("Platform", "id", platformId);
+        }
+        LocalDate end = resolveEnd(to);
+        LocalDate start = resolveStart(from, end);
+        return rollUp(bucketRepository.findDailyTotalsByPlatform(platformId, start, end), granularity);
+    }
+
+    private LocalDate resolveEnd(LocalDate to) {
+        return to != null ? to : LocalDate.now();
+    }
+
+    private LocalDate resolveStart(LocalDate from, LocalDate end) {
+        LocalDate start = from != null ? from : end.minusDays(DEFAULT_RANGE_DAYS - 1);
+        if (start.isAfter(end)) {
+            throw new BadRequestException("'from' must not be after 'to'");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= MAX_RANGE_DAYS) {
+            throw new BadRequestException("Date range cannot exceed " + MAX_RANGE_DAYS + " days");
+        }
+        return start;
+    }
+
+    private List<ProfitBucketDTO> rollUp(List<DailyTotalsRow> days, TimeSeriesGranularity granularity) {
+        TimeSeriesGranularity resolved = granularity != null ? granularity : TimeSeriesGranularity.DAY;
+        Map<LocalDate, ProfitBucketDTO> periods = new TreeMap<>();
+
+        for (DailyTotalsRow day : days) {
+            LocalDate periodStart = periodStart(day.getBucketDate(), resolved);
+            ProfitBucketDTO period = periods.computeIfAbsent(periodStart, key -> ProfitBucketDTO.builder()
+                    .periodStart(key)
+                    .periodEnd(periodEnd(key, resolved))
+                    .deposits(BigDecimal.ZERO)
+                    .withdrawals(BigDecimal.ZERO)
+                    .stakes(BigDecimal.ZERO)
+                    .winnings(BigDecimal.ZERO)
+                    .build());
+
+            period.setDeposits(period.getDeposits().add(day.getDeposits()));
+            period.setWithdrawals(period.getWithdrawals().add(day.getWithdrawals()));
+            period.setStakes(period.getStakes().add(day.getStakes()));
+            period.setWinnings(period.getWinnings().add(day.getWinnings()));
+        }
+
+        List<ProfitBucketDTO> result = new ArrayList<>(periods.values());
+        result.forEach(period -> period.setNet(period.getWinnings().subtract(period.getStakes())));
+        return result;
+    }
+
+    private LocalDate periodStart(LocalDate date, TimeSeriesGranularity granularity) {
+        return switch (granularity) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+
+    private LocalDate periodEnd(LocalDate periodStart, TimeSeriesGranularity granularity) {
+        return switch (granularity) {
+            case DAY -> periodStart;
+            case WEEK -> periodStart.plusDays(6);
+            case MONTH -> periodStart.with(TemporalAdjusters.lastDayOfMonth());
+        };
+    }
+
+    // ==================== HELPERS ====================
+
+    private void apply(Account account, LocalDate bucketDate, BigDecimal deposits, BigDecimal withdrawals,
+                       BigDecimal stakes, BigDecimal winnings) {
+        apply(account.getId(), account.getIdentity().getId(), account.getPlatform().getId(), bucketDate,
+                deposits, withdrawals, stakes, winnings);
+    }
+
+    private void apply(UUID accountId, UUID identityId, UUID platformId, LocalDate bucketDate,
+                       BigDecimal deposits, BigDecimal withdrawals, BigDecimal stakes, BigDecimal winnings) {
+        int updated = bucketRepository.applyDelta(accountId, bucketDate,
+                deposits, withdrawals, stakes, winnings);
+        if (updated == 0 && (deposits.signum() < 0 || withdrawals.signum() < 0
+                || stakes.signum() < 0 || winnings.signum() < 0)) {
+            // Removing an operation recorded before the buckets existed
+            log.warn("No profit bucket for account {} on {}, run the profit bucket rebuild", accountId, bucketDate);
+        } else if (updated == 0) {
+            // First operation of the day for this account; concurrent writers are already
+            // serialized by the account balance update earlier in the same transaction
+            bucketRepository.save(ProfitDailyBucket.builder()
+                    .accountId(accountId)
+                    .identityId(identityId)
+                    .platformId(platformId)
+                    .bucketDate(bucketDate)
+                    .deposits(deposits)
+                    .withdrawals(withdrawals)
+                    .stakes(stakes)
+                    .winnings(winnings)
+                    .build());
+        }
+    }
+}
@@ -1,20 +1,30 @@
 package com.betflow.services;
 
+import com.betflow.dto.pagination.CursorPageDTO;
+import com.betflow.dto.pagination.PageCursor;
 import com.betflow.dto.promotion.PromotionDTO;
 import com.betflow.entities.Account;
 import com.betflow.entities.Promotion;
+import com.betflow.enums.BetOutcome;
 import com.betflow.enums.PromotionStatus;
+import com.betflow.events.DomainDataChangedEvent;
 import com.betflow.exceptions.ResourceNotFoundException;
 import com.betflow.repositories.AccountRepository;
 import com.betflow.repositories.PromotionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -23,15 +33,28 @@ import java.util.stream.Collectors;
 @Slf4j
 public class PromotionService {
 
+    private static final int EXPIRY_CHUNK_SIZE = 1000;
+
     private final PromotionRepository promotionRepository;
     private final AccountRepository accountRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ConcurrencyRetryService concurrencyRetryService;
 
     public List<PromotionDTO> getAllPromotions() {
-        return promotionRepository.findAll().stream()
+        return promotionRepository.findAllWithAccount().stream()
                 .map(this::mapToDTO)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Pagina di promozioni ordinate per id; cursor è il token restituito dalla pagina precedente
+     */
+    public CursorPageDTO<PromotionDTO> getPromotionsPage(String cursor, Integer size) {
+        int pageSize = PageCursor.pageSize(size);
+        return PageCursor.toPage(promotionRepository.findPage(PageCursor.decode(cursor), pageSize), pageSize,
+                promotion -> new PageCursor(promotion.getId().toString(), promotion.getId()), this::mapToDTO);
+    }
+
     public PromotionDTO getPromotionById(UUID id) {
         Promotion promotion = promotionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Promotion", "id", id));
@@ -39,20 +62,20 @@ public class PromotionService {
     }
 
     public List<PromotionDTO> getPromotionsByAccount(UUID accountId) {
-        return promotionRepository.findByAccountId(accountId).stream()
+        return promotionRepository.findWithAccountByAccountId(accountId).stream()
                 .map(this::mapToDTO)
                 .collect(Collectors.toList());
     }
 
     public List<PromotionDTO> getPromotionsByStatus(PromotionStatus status) {
-        return promotionRepository.findByStatus(status).stream()
+        return promotionRepository.findWithAccountByStatus(status).stream()
                 .map(this::mapToDTO)
                 .collect(Collectors.toList());
     }
 
     public List<PromotionDTO> getActivePromotionsExpiringWithinDays(int days) {
         LocalDate deadlineDate = LocalDate.now().plusDays(days);
-        return promotionRepository.findActivePromotionsExpiringWithinDays(PromotionStatus.ACTIVE, deadlineDate).stream()
+        return promotionRepository.findWithAccountExpiringWithinDays(PromotionStatus.ACTIVE, deadlineDate).stream()
                 .map(this::mapToDTO)
                 .collect(Collectors.toList());
     }
@@ -73,18 +96,23 @@ public class PromotionService {
                 .bonusAmount(dto.getBonusAmount())
                 .rolloverTarget(dto.getRolloverTarget())
                 .rolloverDone(BigDecimal.ZERO)
+                .minOdds(dto.getMinOdds())
                 .deadlineDate(dto.getDeadlineDate())
                 .status(dto.getStatus() != null ? dto.getStatus() : PromotionStatus.PENDING)
                 .account(account)
                 .build();
 
         Promotion savedPromotion = promotionRepository.save(promotion);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Promotion"));
         log.info("Promotion created: {} for account {}", savedPromotion.getDescription(), account.getUsername());
         return mapToDTO(savedPromotion);
     }
 
-    @Transactional
     public PromotionDTO updatePromotion(UUID id, PromotionDTO dto) {
+        return concurrencyRetryService.execute("updatePromotion", () -> doUpdatePromotion(id, dto));
+    }
+
+    private PromotionDTO doUpdatePromotion(UUID id, PromotionDTO dto) {
         Promotion promotion = promotionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Promotion", "id", id));
 
@@ -100,6 +128,10 @@ public class PromotionService {
             promotion.setRolloverTarget(dto.getRolloverTarget());
         }
 
+        if (dto.getMinOdds() != null) {
+            promotion.setMinOdds(dto.getMinOdds());
+        }
+
         if (dto.getRolloverDone() != null) {
             promotion.setRolloverDone(dto.getRolloverDone());
             checkAndUpdateStatus(promotion);
@@ -114,12 +146,16 @@ public class PromotionService {
         }
 
         Promotion savedPromotion = promotionRepository.save(promotion);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Promotion"));
         log.info("Promotion updated: {}", savedPromotion.getId());
         return mapToDTO(savedPromotion);
     }
 
-    @Transactional
     public PromotionDTO updateRollover(UUID id, BigDecimal rolloverAmount) {
+        return concurrencyRetryService.execute("updateRollover", () -> doUpdateRollover(id, rolloverAmount));
+    }
+
+    private PromotionDTO doUpdateRollover(UUID id, BigDecimal rolloverAmount) {
         Promotion promotion = promotionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Promotion", "id", id));
 
@@ -128,17 +164,102 @@ public class PromotionService {
         checkAndUpdateStatus(promotion);
 
         Promotion savedPromotion = promotionRepository.save(promotion);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Promotion"));
         log.info("Rollover updated for promotion {}: {} / {}",
                 savedPromotion.getId(), newRolloverDone, savedPromotion.getRolloverTarget());
         return mapToDTO(savedPromotion);
     }
 
+    /**
+     * Scade le promozioni attive con scadenza precedente a today, a blocchi di righe per transazione.
+     * Restituisce gli id delle promozioni scadute
+     */
+    public List<UUID> expireOverduePromotions(LocalDate today) {
+        List<UUID> expired = new ArrayList<>();
+        List<UUID> chunk;
+        do {
+            chunk = concurrencyRetryService.execute("expirePromotions",
+                    () -> promotionRepository.expireOverdue(today, EXPIRY_CHUNK_SIZE));
+            expired.addAll(chunk);
+        } while (chunk.size() == EXPIRY_CHUNK_SIZE);
+
+        if (!expired.isEmpty()) {
+            eventPublisher.publishEvent(new DomainDataChangedEvent("Promotion"));
+        }
+        return expired;
+    }
+
+    /**
+     * Puntata chiusa da aggiungere al rollover delle promozioni del conto
+     */
+    public record QualifyingStake(UUID accountId, BigDecimal odds, BigDecimal amount) {
+    }
+
+    /**
+     * Una scommessa annullata restituisce la puntata e non conta per il rollover
+     */
+    public static boolean countsTowardsRollover(BetOutcome outcome) {
+        return outcome == BetOutcome.WIN || outcome == BetOutcome.LOSS;
+    }
+
+    /**
+     * Aggiunge le puntate chiuse al rollover delle promozioni attive dei loro conti, nella transazione del chiamante.
+     * Le puntate sono sommate per conto e quota, un UPDATE per combinazione; la quota minima di ogni promozione
+     * è verificata nel database, poi le promozioni che raggiungono l'obiettivo passano a COMPLETED
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void accrueRollover(Collection<QualifyingStake> stakes) {
+        // Sorted by account so that promotion rows are always locked in the same order
+        Map<UUID, Map<BigDecimal, BigDecimal>> byAccount = new TreeMap<>();
+        for (QualifyingStake stake : stakes) {
+            // Without odds no minimum can be checked, such bets never count
+            if (stake.odds() != null) {
+                byAccount.computeIfAbsent(stake.accountId(), id -> new TreeMap<>())
+                        .merge(stake.odds(), stake.amount(), BigDecimal::add);
+            }
+        }
+
+        int updated = 0;
+        for (Map.Entry<UUID, Map<BigDecimal, BigDecimal>> account : byAccount.entrySet()) {
+            for (Map.Entry<BigDecimal, BigDecimal> odds : account.getValue().entrySet()) {
+                updated += promotionRepository.addToRollover(
+                        account.getKey(), PromotionStatus.ACTIVE, odds.getKey(), odds.getValue());
+            }
+        }
+        if (updated == 0) {
+            return;
+        }
+
+        int completed = checkAndUpdateStatus(byAccount.keySet());
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Promotion"));
+        log.info("Rollover accrued on {} promotion updates across {} accounts, {} promotions completed",
+                updated, byAccount.size(), completed);
+    }
+
+    /**
+     * Toglie dal rollover delle promozioni attive la puntata di una scommessa chiusa che viene eliminata.
+     * Le promozioni già COMPLETED o EXPIRED non vengono riaperte
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reverseRollover(QualifyingStake stake) {
+        if (stake.odds() == null) {
+            return;
+        }
+        int updated = promotionRepository.subtractFromRollover(
+                stake.accountId(), PromotionStatus.ACTIVE, stake.odds(), stake.amount());
+        if (updated > 0) {
+            eventPublisher.publishEvent(new DomainDataChangedEvent("Promotion"));
+            log.info("Rollover reversed by {} on {} promotions of account {}", stake.amount(), updated, stake.accountId());
+        }
+    }
+
     @Transactional
     public void deletePromotion(UUID id) {
         Promotion promotion = promotionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Promotion", "id", id));
 
         promotionRepository.delete(promotion);
+        eventPublisher.publishEvent(new DomainDataChangedEvent("Promotion"));
         log.info("Promotion deleted: {}", promotion.getDescription());
     }
 
@@ -149,6 +270,14 @@ public class PromotionService {
         }
     }
 
+    /**
+     * Stessa regola per tutte le promozioni attive dei conti indicati, con un solo UPDATE invece di ricaricarle
+     */
+    private int checkAndUpdateStatus(Collection<UUID> accountIds) {
+        return promotionRepository.completeReachedRollovers(
+                accountIds, PromotionStatus.ACTIVE, PromotionStatus.COMPLETED);
+    }
+
     private PromotionDTO mapToDTO(Promotion promotion) {
         return PromotionDTO.builder()
                 .id(promotion.getId())
@@ -157,6 +286,7 @@ public class PromotionService {
                 .rolloverTarget(promotion.getRolloverTarget())
                 .rolloverDone(promotion.getRolloverDone())
                 .rolloverPercentage(promotion.getRolloverPercentage())
+                .minOdds(promotion.getMinOdds())
                 .deadlineDate(promotion.getDeadlineDate())
                 .status(promotion.getStatus())
                 .accountId(promotion.getAccount().getId())
@@ -12,6 +12,7 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Servizio per task schedulati che inviano notifiche automatiche
@@ -27,6 +28,7 @@ public class ScheduledTasksService {
     private final NotificationService notificationService;
     private final IdentityRepository identityRepository;
     private final PromotionRepository promotionRepository;
+    private final PromotionService promotionService;
 
     /**
      * Invia un riepilogo giornaliero alle 9:00 ogni giorno
@@ -41,20 +43,20 @@ public class ScheduledTasksService {
             LocalDate sevenDaysLater = today.plusDays(7);
 
             // Count expiring documents (next 7 days)
-            List<Identity> expiringDocuments = identityRepository
-                    .findByDocumentExpiryDateBetween(today, sevenDaysLater);
+            int expiringDocuments = (int) identityRepository
+                    .countByDocumentExpiryDateBetween(today, sevenDaysLater);
 
             // Count promotions expiring today
-            List<Promotion> expiringPromotions = promotionRepository
-                    .findByDeadlineDate(today);
+            int expiringPromotions = (int) promotionRepository
+                    .countByDeadlineDate(today);
 
             notificationService.sendDailySummary(
-                    expiringDocuments.size(),
-                    expiringPromotions.size()
+                    expiringDocuments,
+                    expiringPromotions
             );
 
             log.info("Daily summary sent: {} expiring documents, {} expiring promotions",
-                    expiringDocuments.size(), expiringPromotions.size());
+                    expiringDocuments, expiringPromotions);
 
         } catch (Exception e) {
             log.error("Failed to send daily summary: {}", e.getMessage());
@@ -128,28 +130,21 @@ public class ScheduledTasksService {
     }
 
     /**
-     * Aggiorna automaticamente lo stato delle promozioni scadute ogni giorno a mezzanotte
+     * Aggiorna automaticamente lo stato delle promozioni scadute ogni giorno a mezzanotte,
+     * con UPDATE in blocco invece di caricare e salvare ogni promozione
      */
     @Scheduled(cron = "0 0 0 * * *")
     public void updateExpiredPromotions() {
         log.info("Running scheduled task: Update Expired Promotions");
 
         try {
-            LocalDate today = LocalDate.now();
+            List<UUID> expiredIds = promotionService.expireOverduePromotions(LocalDate.now());
 
-            List<Promotion> activePromotions = promotionRepository.findByStatus(PromotionStatus.ACTIVE);
-            int expiredCount = 0;
-
-            for (Promotion promotion : activePromotions) {
-                if (promotion.getDeadlineDate() != null && promotion.getDeadlineDate().isBefore(today)) {
-                    promotion.setStatus(PromotionStatus.EXPIRED);
-                    promotionRepository.save(promotion);
-                    expiredCount++;
-                }
+            log.info("Expired promotions update completed: {} promotions marked as expired", expiredIds.size());
+            if (!expiredIds.isEmpty()) {
+                log.debug("Expired promotion ids: {}", expiredIds);
             }
 
-            log.info("Expired promotions update completed: {} promotions marked as expired", expiredCount);
-
         } catch (Exception e) {
             log.error("Failed to update expired promotions: {}", e.getMessage());
         }
@@ -1,20 +1,33 @@
 package com.betflow.services;
 
+import com.betflow.config.DashboardQueryExecutor;
 import com.betflow.dto.statistics.DashboardDTO;
 import com.betflow.dto.statistics.IdentityProfitDTO;
-import com.betflow.entities.Identity;
-import com.betflow.enums.PromotionStatus;
+import com.betflow.entities.IdentityLedgerRollup;
+import com.betflow.enums.DashboardQueryMode;
+import com.betflow.exceptions.BadRequestException;
 import com.betflow.exceptions.ResourceNotFoundException;
 import com.betflow.repositories.*;
+import com.betflow.repositories.StatisticsRepository.DashboardTotalsRow;
+import com.betflow.repositories.StatisticsRepository.IdentityProfitRow;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,105 +35,71 @@ import java.util.stream.Collectors;
 @Slf4j
 public class StatisticsService {
 
-    private final IdentityRepository identityRepository;
-    private final AccountRepository accountRepository;
-    private final PlatformRepository platformRepository;
-    private final PromotionRepository promotionRepository;
-    private final FinancialOperationRepository financialOperationRepository;
+    public static final int DEFAULT_TOP_IDENTITIES = 5;
+    public static final int MAX_TOP_IDENTITIES = 100;
+
+    private final StatisticsRepository statisticsRepository;
+    private final IdentityLedgerRollupRepository identityLedgerRollupRepository;
+    private final DashboardQueryExecutor dashboardQueryExecutor;
+
+    @Value("${betflow.dashboard.query-mode:SERIAL}")
+    private DashboardQueryMode dashboardQueryMode;
 
     /**
-     * Calcola le statistiche di profitto per una singola identità
+     * Calcola le statistiche di profitto per una singola identità leggendo il rollup per chiave
      */
     public IdentityProfitDTO calculateProfitByIdentity(UUID identityId) {
-        Identity identity = identityRepository.findById(identityId)
-                .orElseThrow(() -> new ResourceNotFoundException("Identity", "id", identityId));
-
-        BigDecimal totalDeposits = financialOperationRepository.sumDepositsByIdentityId(identityId);
-        BigDecimal totalWithdrawals = financialOperationRepository.sumWithdrawalsByIdentityId(identityId);
-        BigDecimal totalBalance = accountRepository.sumCurrentBalanceByIdentityId(identityId);
-
-        if (totalDeposits == null) totalDeposits = BigDecimal.ZERO;
-        if (totalWithdrawals == null) totalWithdrawals = BigDecimal.ZERO;
-        if (totalBalance == null) totalBalance = BigDecimal.ZERO;
-
-        // Profit = (Withdrawals + Current Balance) - Deposits
-        BigDecimal netProfit = totalWithdrawals.add(totalBalance).subtract(totalDeposits);
-
-        int accountsCount = accountRepository.findByIdentityId(identityId).size();
-
-        return IdentityProfitDTO.builder()
-                .identityId(identityId)
-                .identityFullName(identity.getFullName())
-                .totalDeposits(totalDeposits)
-                .totalWithdrawals(totalWithdrawals)
-                .totalCurrentBalance(totalBalance)
-                .netProfit(netProfit)
-                .totalAccounts(accountsCount)
-                .build();
+        return identityLedgerRollupRepository.findByIdWithIdentity(identityId)
+                .map(this::mapToDTO)
+                .orElseGet(() -> statisticsRepository.findIdentityProfit(identityId)
+                        .map(this::mapToDTO)
+                        .orElseThrow(() -> new ResourceNotFoundException("Identity", "id", identityId)));
     }
 
     /**
-     * Calcola le statistiche aggregate per la dashboard
+     * Calcola le statistiche aggregate per la dashboard.
+     * In modalità PARALLEL i totali e la classifica delle identità vengono calcolati in contemporanea.
      */
     public DashboardDTO getDashboardStatistics() {
-        log.info("Calculating dashboard statistics");
+        log.info("Calculating dashboard statistics ({} mode)", dashboardQueryMode);
 
-        // Count entities
-        int totalIdentities = (int) identityRepository.count();
-        int totalAccounts = (int) accountRepository.count();
-        int activeAccounts = (int) accountRepository.countActiveAccounts();
-        int limitedAccounts = (int) accountRepository.countLimitedAccounts();
-        int totalPlatforms = (int) platformRepository.count();
-
-        // Financial totals
-        BigDecimal totalDeposits = financialOperationRepository.sumAllDeposits();
-        BigDecimal totalWithdrawals = financialOperationRepository.sumAllWithdrawals();
-        BigDecimal totalCurrentBalance = accountRepository.sumAllCurrentBalances();
-
-        if (totalDeposits == null) totalDeposits = BigDecimal.ZERO;
-        if (totalWithdrawals == null) totalWithdrawals = BigDecimal.ZERO;
-        if (totalCurrentBalance == null) totalCurrentBalance = BigDecimal.ZERO;
-
-        // Net profit
-        BigDecimal overallNetProfit = totalWithdrawals.add(totalCurrentBalance).subtract(totalDeposits);
-
-        // Promotions count by status
-        long activePromotions = promotionRepository.countByStatus(PromotionStatus.ACTIVE);
-        long completedPromotions = promotionRepository.countByStatus(PromotionStatus.COMPLETED);
-        long expiredPromotions = promotionRepository.countByStatus(PromotionStatus.EXPIRED);
-
-        // Expiring documents (next 7 days)
         LocalDate today = LocalDate.now();
         LocalDate sevenDaysLater = today.plusDays(7);
-        int expiringDocumentsCount = identityRepository.findByDocumentExpiryDateBetween(today, sevenDaysLater).size();
+        Map<String, Long> timings = new ConcurrentHashMap<>();
 
-        // Expiring promotions (next 7 days)
-        int expiringPromotionsCount = promotionRepository
-                .findActivePromotionsExpiringWithinDays(PromotionStatus.ACTIVE, sevenDaysLater).size();
+        // Counts, totals and expiring items in a single statement
+        CompletableFuture<DashboardTotalsRow> totals = runQuery("dashboardTotals", timings,
+                () -> statisticsRepository.findDashboardTotals(today, sevenDaysLater));
 
-        // Top 5 identities by profit
-        List<IdentityProfitDTO> topIdentitiesByProfit = identityRepository.findAll().stream()
-                .map(identity -> calculateProfitByIdentity(identity.getId()))
-                .sorted(Comparator.comparing(IdentityProfitDTO::getNetProfit).reversed())
-                .limit(5)
-                .collect(Collectors.toList());
+        // Top identities by profit
+        CompletableFuture<List<IdentityProfitDTO>> topIdentitiesByProfit = runQuery("topIdentitiesByProfit", timings,
+                () -> getTopIdentitiesByProfit(DEFAULT_TOP_IDENTITIES));
+
+        DashboardTotalsRow row = await(totals);
+
+        // Net profit
+        BigDecimal overallNetProfit = row.getTotalWithdrawals()
+                .add(row.getTotalCurrentBalance())
+                .subtract(row.getTotalDeposits());
 
         return DashboardDTO.builder()
-                .totalIdentities(totalIdentities)
-                .totalAccounts(totalAccounts)
-                .activeAccounts(activeAccounts)
-                .limitedAccounts(limitedAccounts)
-                .totalPlatforms(totalPlatforms)
-                .totalDeposits(totalDeposits)
-                .totalWithdrawals(totalWithdrawals)
-                .totalCurrentBalance(totalCurrentBalance)
+                .totalIdentities(row.getTotalIdentities().intValue())
+                .totalAccounts(row.getTotalAccounts().intValue())
+                .activeAccounts(row.getActiveAccounts().intValue())
+                .limitedAccounts(row.getLimitedAccounts().intValue())
+                .totalPlatforms(row.getTotalPlatforms().intValue())
+                .totalDeposits(row.getTotalDeposits())
+                .totalWithdrawals(row.getTotalWithdrawals())
+                .totalCurrentBalance(row.getTotalCurrentBalance())
                 .overallNetProfit(overallNetProfit)
-                .activePromotions(activePromotions)
-                .completedPromotions(completedPromotions)
-                .expiredPromotions(expiredPromotions)
-                .expiringDocumentsCount(expiringDocumentsCount)
-                .expiringPromotionsCount(expiringPromotionsCount)
-                .topIdentitiesByProfit(topIdentitiesByProfit)
+                .activePromotions(row.getActivePromotions())
+                .completedPromotions(row.getCompletedPromotions())
+                .expiredPromotions(row.getExpiredPromotions())
+                .expiringDocumentsCount(row.getExpiringDocuments().intValue())
+                .expiringPromotionsCount(row.getExpiringPromotions().intValue())
+                .topIdentitiesByProfit(await(topIdentitiesByProfit))
+                .queryTimingsMs(sortBySlowest(timings))
+                .generatedAt(LocalDateTime.now())
                 .build();
     }
 
@@ -128,9 +107,20 @@ public class StatisticsService {
      * Ottiene le statistiche di profitto per tutte le identità
      */
     public List<IdentityProfitDTO> getAllIdentitiesProfits() {
-        return identityRepository.findAll().stream()
-                .map(identity -> calculateProfitByIdentity(identity.getId()))
-                .sorted(Comparator.comparing(IdentityProfitDTO::getNetProfit).reversed())
+        return statisticsRepository.findAllIdentityProfits().stream()
+                .map(this::mapToDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Ottiene le prime k identità per profitto netto
+     */
+    public List<IdentityProfitDTO> getTopIdentitiesByProfit(int k) {
+        if (k < 1 || k > MAX_TOP_IDENTITIES) {
+            throw new BadRequestException("k must be between 1 and " + MAX_TOP_IDENTITIES);
+        }
+        return statisticsRepository.findTopIdentityProfits(k).stream()
+                .map(this::mapToDTO)
                 .collect(Collectors.toList());
     }
 
@@ -138,10 +128,9 @@ public class StatisticsService {
      * Ottiene le identità con profitto positivo
      */
     public List<IdentityProfitDTO> getProfitableIdentities() {
-        return identityRepository.findAll().stream()
-                .map(identity -> calculateProfitByIdentity(identity.getId()))
+        return statisticsRepository.findAllIdentityProfits().stream()
+                .map(this::mapToDTO)
                 .filter(profit -> profit.getNetProfit().compareTo(BigDecimal.ZERO) > 0)
-                .sorted(Comparator.comparing(IdentityProfitDTO::getNetProfit).reversed())
                 .collect(Collectors.toList());
     }
 
@@ -149,10 +138,71 @@ public class StatisticsService {
      * Ottiene le identità in perdita
      */
     public List<IdentityProfitDTO> getUnprofitableIdentities() {
-        return identityRepository.findAll().stream()
-                .map(identity -> calculateProfitByIdentity(identity.getId()))
+        return statisticsRepository.findAllIdentityProfits().stream()
+                .map(this::mapToDTO)
                 .filter(profit -> profit.getNetProfit().compareTo(BigDecimal.ZERO) < 0)
                 .sorted(Comparator.comparing(IdentityProfitDTO::getNetProfit))
                 .collect(Collectors.toList());
     }
+
+    private <T> CompletableFuture<T> runQuery(String name, Map<String, Long> timings, Supplier<T> query) {
+        Supplier<T> timedQuery = () -> {
+            long start = System.nanoTime();
+            try {
+                return query.get();
+            } finally {
+                timings.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        };
+        if (dashboardQueryMode == DashboardQueryMode.PARALLEL) {
+            return dashboardQueryExecutor.submit(timedQuery);
+        }
+        return CompletableFuture.completedFuture(timedQuery.get());
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Map<String, Long> sortBySlowest(Map<String, Long> timings) {
+        return timings.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    private IdentityProfitDTO mapToDTO(IdentityProfitRow row) {
+        return IdentityProfitDTO.builder()
+                .identityId(row.getIdentityId())
+                .identityFullName(row.getFirstName() + " " + row.getLastName())
+                .totalDeposits(row.getTotalDeposits())
+                .totalWithdrawals(row.getTotalWithdrawals())
+                .totalCurrentBalance(row.getTotalCurrentBalance())
+                .netProfit(row.getNetProfit())
+                .totalAccounts(row.getTotalAccounts().intValue())
+                .build();
+    }
+
+    private IdentityProfitDTO mapToDTO(IdentityLedgerRollup rollup) {
+        // Profit = (Withdrawals + Current Balance) - Deposits
+        BigDecimal netProfit = rollup.getTotalWithdrawals()
+                .add(rollup.getTotalBalance())
+                .subtract(rollup.getTotalDeposits());
+
+        return IdentityProfitDTO.builder()
+                .identityId(rollup.getIdentityId())
+                .identityFullName(rollup.getIdentity().getFullName())
+                .totalDeposits(rollup.getTotalDeposits())
+                .totalWithdrawals(rollup.getTotalWithdrawals())
+                .totalCurrentBalance(rollup.getTotalBalance())
+                .netProfit(netProfit)
+                .totalAccounts(rollup.getAccountsCount())
+                .build();
+    }
 }
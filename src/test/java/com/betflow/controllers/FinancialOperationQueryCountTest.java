@@ -0,0 +1,169 @@
+package com.betflow.controllers;
+
+import com.betflow.dto.account.AccountDTO;
+import com.betflow.dto.identity.IdentityDTO;
+import com.betflow.dto.operation.BetOperationDTO;
+import com.betflow.dto.operation.DepositDTO;
+import com.betflow.dto.operation.WithdrawalDTO;
+import com.betflow.dto.platform.PlatformDTO;
+import com.betflow.enums.PlatformType;
+import com.betflow.services.AccountService;
+import com.betflow.services.FinancialOperationService;
+import com.betflow.services.IdentityService;
+import com.betflow.services.PlatformService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Ogni lista di operazioni deve eseguire un numero costante di istruzioni SQL,
+ * indipendentemente dal numero di righe, conti e piattaforme coinvolti.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:querycountdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.betflow.controllers.FinancialOperationQueryCountTest$StatementCounter"
+})
+@AutoConfigureMockMvc(addFilters = false)
+public class FinancialOperationQueryCountTest {
+
+    private static final int ACCOUNTS = 3;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FinancialOperationService financialOperationService;
+
+    @Autowired
+    private PlatformService platformService;
+
+    @Autowired
+    private IdentityService identityService;
+
+    @Autowired
+    private AccountService accountService;
+
+    private UUID identityId;
+    private UUID accountId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+
+        IdentityDTO identity = identityService.createIdentity(IdentityDTO.builder()
+                .firstName("Luigi")
+                .lastName("Verdi")
+                .fiscalCode("VRDLGU" + suffix)
+                .build());
+        identityId = identity.getId();
+
+        // One account per platform, each with one operation of every type
+        for (int i = 0; i < ACCOUNTS; i++) {
+            PlatformDTO platform = platformService.createPlatform(PlatformDTO.builder()
+                    .name("Query count " + suffix + " " + i)
+                    .websiteUrl("https://example.com")
+                    .type(PlatformType.BOOKMAKER)
+                    .build());
+
+            AccountDTO account = accountService.createAccount(AccountDTO.builder()
+                    .username("querycount-" + suffix + "-" + i)
+                    .password("secret")
+                    .currentBalance(new BigDecimal("100.00"))
+                    .identityId(identityId)
+                    .platformId(platform.getId())
+                    .build());
+            accountId = account.getId();
+
+            financialOperationService.createDeposit(DepositDTO.builder()
+                    .accountId(accountId)
+                    .amount(new BigDecimal("50.00"))
+                    .paymentMethod("CARD")
+                    .build());
+            financialOperationService.createWithdrawal(WithdrawalDTO.builder()
+                    .accountId(accountId)
+                    .amount(new BigDecimal("20.00"))
+                    .build());
+            financialOperationService.createBetOperation(BetOperationDTO.builder()
+                    .accountId(accountId)
+                    .amount(new BigDecimal("5.00"))
+                    .eventName("Query count match")
+                    .odds(new BigDecimal("1.80"))
+                    .build());
+        }
+    }
+
+    @Test
+    void operationLists_RunOneStatementEach() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> endpoints = List.of(
+                "/api/operations",
+                "/api/operations/account/" + accountId,
+                "/api/operations/identity/" + identityId,
+                "/api/operations/date-range?startDate=" + now.minusDays(1) + "&endDate=" + now.plusDays(1),
+                "/api/operations/page",
+                "/api/operations/deposits",
+                "/api/operations/deposits/account/" + accountId,
+                "/api/operations/withdrawals",
+                "/api/operations/withdrawals/account/" + accountId,
+                "/api/operations/withdrawals/pending",
+                "/api/operations/withdrawals/status/REQUESTED",
+                "/api/operations/bets",
+                "/api/operations/bets/account/" + accountId,
+                "/api/operations/bets/pending");
+
+        for (String endpoint : endpoints) {
+            StatementCounter.reset();
+            mockMvc.perform(get(endpoint))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$").isNotEmpty());
+            assertEquals(1, StatementCounter.count(), "SQL statements for " + endpoint);
+        }
+    }
+
+    @Test
+    void identityOperations_ReturnEveryAccountWithPlatform() throws Exception {
+        mockMvc.perform(get("/api/operations/identity/" + identityId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(ACCOUNTS * 3))
+                .andExpect(jsonPath("$[0].platformName").isNotEmpty())
+                .andExpect(jsonPath("$[0].accountUsername").isNotEmpty())
+                .andExpect(jsonPath("$[0].operationType").isNotEmpty());
+    }
+
+    /**
+     * Conta le istruzioni SQL preparate dal thread corrente (MockMvc esegue la richiesta nel thread del test)
+     */
+    public static class StatementCounter implements StatementInspector {
+
+        private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+        static void reset() {
+            COUNT.get()[0] = 0;
+        }
+
+        static int count() {
+            return COUNT.get()[0];
+        }
+
+        @Override
+        public String inspect(String sql) {
+            COUNT.get()[0]++;
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.betflow.controllers;
+
+import com.betflow.controllers.FinancialOperationQueryCountTest.StatementCounter;
+import com.betflow.dto.account.AccountDTO;
+import com.betflow.dto.identity.IdentityDTO;
+import com.betflow.dto.platform.PlatformDTO;
+import com.betflow.dto.promotion.PromotionDTO;
+import com.betflow.enums.PlatformType;
+import com.betflow.enums.PromotionStatus;
+import com.betflow.services.AccountService;
+import com.betflow.services.IdentityService;
+import com.betflow.services.PlatformService;
+import com.betflow.services.PromotionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Le liste di conti, identità, piattaforme e promozioni leggono le relazioni con i fetch plan:
+ * il numero di istruzioni SQL non deve crescere con il numero di righe restituite.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:listcountdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.betflow.controllers.FinancialOperationQueryCountTest$StatementCounter"
+})
+@AutoConfigureMockMvc(addFilters = false)
+public class ListQueryCountTest {
+
+    private static final int MAX_STATEMENTS = 2;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PlatformService platformService;
+
+    @Autowired
+    private IdentityService identityService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private PromotionService promotionService;
+
+    private String suffix;
+    private UUID identityId;
+    private UUID platformId;
+    private UUID accountId;
+    private int rows;
+
+    @BeforeEach
+    void setUp() {
+        suffix = UUID.randomUUID().toString().substring(0, 8);
+        identityId = createIdentity().getId();
+        accountId = addRow().getId();
+    }
+
+    @Test
+    void listEndpoints_StatementCountDoesNotGrowWithRows() throws Exception {
+        Map<String, Integer> few = countStatements();
+
+        for (int i = 0; i < 4; i++) {
+            addRow();
+        }
+        Map<String, Integer> many = countStatements();
+
+        few.forEach((endpoint, count) -> {
+            assertTrue(count <= MAX_STATEMENTS, "SQL statements for " + endpoint + ": " + count);
+            assertEquals(count, many.get(endpoint), "SQL statements for " + endpoint + " grew with the rows");
+        });
+    }
+
+    private Map<String, Integer> countStatements() throws Exception {
+        List<String> endpoints = List.of(
+                "/api/accounts",
+                "/api/accounts/page",
+                "/api/accounts/identity/" + identityId,
+                "/api/accounts/platform/" + platformId,
+                "/api/accounts/active",
+                "/api/accounts/limited",
+                "/api/identities",
+                "/api/identities/page",
+                "/api/identities/expiring?days=30",
+                "/api/platforms",
+                "/api/platforms/page",
+                "/api/promotions",
+                "/api/promotions/page",
+                "/api/promotions/account/" + accountId,
+                "/api/promotions/identity/" + identityId,
+                "/api/promotions/status/ACTIVE",
+                "/api/promotions/expiring?days=30");
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String endpoint : endpoints) {
+            StatementCounter.reset();
+            mockMvc.perform(get(endpoint)).andExpect(status().isOk());
+            counts.put(endpoint, StatementCounter.count());
+        }
+        return counts;
+    }
+
+    /**
+     * Una nuova identità, una piattaforma con un conto limitato dell'identità condivisa
+     * e due promozioni: una sul nuovo conto e una sul primo
+     */
+    private AccountDTO addRow() {
+        int row = rows++;
+        createIdentity();
+
+        PlatformDTO platform = platformService.createPlatform(PlatformDTO.builder()
+                .name("List count " + suffix + " " + row)
+                .websiteUrl("https://example.com")
+                .type(PlatformType.BOOKMAKER)
+                .build());
+        if (platformId == null) {
+            platformId = platform.getId();
+        }
+
+        AccountDTO account = accountService.createAccount(AccountDTO.builder()
+                .username("listcount-" + suffix + "-" + row)
+                .password("secret")
+                .identityId(identityId)
+                .platformId(platform.getId())
+                .build());
+        accountService.updateAccount(account.getId(), AccountDTO.builder().isLimited(true).build());
+
+        createPromotion(account.getId());
+        createPromotion(accountId != null ? accountId : account.getId());
+        return account;
+    }
+
+    private IdentityDTO createIdentity() {
+        return identityService.createIdentity(IdentityDTO.builder()
+                .firstName("Anna")
+                .lastName("Bianchi")
+                .fiscalCode("BNCNNA" + suffix + rows)
+                .documentExpiryDate(LocalDate.now().plusDays(10))
+                .build());
+    }
+
+    private void createPromotion(UUID promotionAccountId) {
+        promotionService.createPromotion(PromotionDTO.builder()
+                .description("Welcome bonus")
+                .bonusAmount(new BigDecimal("10.00"))
+                .rolloverTarget(new BigDecimal("50.00"))
+                .deadlineDate(LocalDate.now().plusDays(10))
+                .status(PromotionStatus.ACTIVE)
+                .accountId(promotionAccountId)
+                .build());
+    }
+}
@@ -0,0 +1,44 @@
+package com.betflow.money;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoneyTest {
+
+    @Test
+    void of_KeepsCentsAndRejectsHiddenRounding() {
+        assertEquals(1050, Money.of(new BigDecimal("10.5")).cents());
+        assertEquals(Money.ZERO, Money.of(null));
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("0.005")));
+        assertEquals(1, Money.of(new BigDecimal("0.005"), RoundingMode.HALF_UP).cents());
+    }
+
+    @Test
+    void times_MatchesBigDecimalRounding() {
+        String[] stakes = {"10.00", "3.33", "0.01", "-7.77", "1234.56"};
+        String[] odds = {"1.01", "2.50", "3.333", "1.005", "17.75"};
+        for (String stake : stakes) {
+            for (String odd : odds) {
+                for (RoundingMode rounding : new RoundingMode[]{RoundingMode.HALF_UP, RoundingMode.HALF_EVEN,
+                        RoundingMode.FLOOR, RoundingMode.CEILING, RoundingMode.DOWN, RoundingMode.UP}) {
+                    BigDecimal expected = new BigDecimal(stake).multiply(new BigDecimal(odd)).setScale(2, rounding);
+                    assertEquals(expected, Money.of(new BigDecimal(stake)).times(new BigDecimal(odd), rounding)
+                            .toBigDecimal(), stake + " x " + odd + " " + rounding);
+                }
+            }
+        }
+    }
+
+    @Test
+    void arithmetic_FailsInsteadOfOverflowing() {
+        Money max = Money.ofCents(Long.MAX_VALUE);
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofCents(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofCents(Long.MIN_VALUE).negate());
+        assertThrows(ArithmeticException.class, () -> max.times(new BigDecimal("2.00"), RoundingMode.HALF_UP));
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("100000000000000000.00")));
+    }
+}
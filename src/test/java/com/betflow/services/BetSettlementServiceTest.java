@@ -0,0 +1,206 @@
+package com.betflow.services;
+
+import com.betflow.dto.account.AccountDTO;
+import com.betflow.dto.identity.IdentityDTO;
+import com.betflow.dto.operation.BetOperationDTO;
+import com.betflow.dto.operation.BetSettlementDTO;
+import com.betflow.dto.operation.BulkSettlementRequestDTO;
+import com.betflow.dto.operation.BulkSettlementResultDTO;
+import com.betflow.dto.platform.PlatformDTO;
+import com.betflow.dto.promotion.PromotionDTO;
+import com.betflow.enums.BetOutcome;
+import com.betflow.enums.PlatformType;
+import com.betflow.enums.PromotionStatus;
+import com.betflow.repositories.AccountRepository;
+import com.betflow.repositories.PromotionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class BetSettlementServiceTest {
+
+    @Autowired
+    private FinancialOperationService financialOperationService;
+
+    @Autowired
+    private PlatformService platformService;
+
+    @Autowired
+    private IdentityService identityService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private BetIngestionService betIngestionService;
+
+    @Autowired
+    private PromotionService promotionService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PromotionRepository promotionRepository;
+
+    private UUID identityId;
+    private UUID accountId;
+    private String eventName;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        eventName = "Settlement match " + suffix;
+
+        PlatformDTO platform = platformService.createPlatform(PlatformDTO.builder()
+                .name("Settlement " + suffix)
+                .websiteUrl("https://example.com")
+                .type(PlatformType.BOOKMAKER)
+                .build());
+
+        IdentityDTO identity = identityService.createIdentity(IdentityDTO.builder()
+                .firstName("Mario")
+                .lastName("Rossi")
+                .fiscalCode("RSSMRA" + suffix)
+                .build());
+        identityId = identity.getId();
+
+        AccountDTO account = accountService.createAccount(AccountDTO.builder()
+                .username("settlement-" + suffix)
+                .password("secret")
+                .currentBalance(new BigDecimal("100.00"))
+                .identityId(identityId)
+                .platformId(platform.getId())
+                .build());
+        accountId = account.getId();
+    }
+
+    @Test
+    void settleBets_SeveralBetsOnOneAccount_CreditRoundedPayouts() {
+        UUID win = createBet("1.15", "1.33");
+        UUID otherWin = createBet("2.05", "1.47");
+        UUID loss = createBet("3.00", "2.00");
+        UUID refunded = createBet("0.99", "3.10");
+
+        BulkSettlementResultDTO result = financialOperationService.settleBets(BulkSettlementRequestDTO.builder()
+                .bets(List.of(
+                        new BetSettlementDTO(win, BetOutcome.WIN),
+                        new BetSettlementDTO(otherWin, BetOutcome.WIN),
+                        new BetSettlementDTO(loss, BetOutcome.LOSS),
+                        new BetSettlementDTO(refunded, BetOutcome.VOID)))
+                .build());
+
+        assertEquals(4, result.getSettled());
+        assertEquals(1, result.getAccountsUpdated());
+        // 1.5295 -> 1.53, 3.0135 -> 3.01, 0, 0.99
+        assertEquals(0, new BigDecimal("5.53").compareTo(result.getTotalPayout()));
+
+        // 100 - (1.15 + 2.05 + 3.00 + 0.99) + 5.53
+        BigDecimal expected = new BigDecimal("98.34");
+        assertEquals(0, expected.compareTo(accountRepository.findCurrentBalanceById(accountId)));
+        assertEquals(0, expected.compareTo(
+                statisticsService.calculateProfitByIdentity(identityId).getTotalCurrentBalance()));
+    }
+
+    @Test
+    void settleBets_AlreadySettled_NotPaidTwice() {
+        UUID bet = createBet("10.00", "2.50");
+
+        BulkSettlementResultDTO first = financialOperationService.settleBets(BulkSettlementRequestDTO.builder()
+                .bets(List.of(new BetSettlementDTO(bet, BetOutcome.WIN)))
+                .build());
+        assertEquals(1, first.getSettled());
+
+        BulkSettlementResultDTO byIds = financialOperationService.settleBets(BulkSettlementRequestDTO.builder()
+                .bets(List.of(new BetSettlementDTO(bet, BetOutcome.WIN)))
+                .build());
+        assertEquals(0, byIds.getSettled());
+        assertTrue(byIds.getSkippedBetIds().contains(bet));
+
+        BulkSettlementResultDTO byEvent = financialOperationService.settleBets(BulkSettlementRequestDTO.builder()
+                .eventName(eventName)
+                .outcome(BetOutcome.WIN)
+                .build());
+        assertEquals(0, byEvent.getSettled());
+
+        financialOperationService.updateBetOutcome(bet, BetOperationDTO.builder().outcome(BetOutcome.WIN).build());
+
+        // 100 - 10 + 25, credited once
+        BigDecimal expected = new BigDecimal("115.00");
+        assertEquals(0, expected.compareTo(accountRepository.findCurrentBalanceById(accountId)));
+        assertEquals(0, expected.compareTo(
+                statisticsService.calculateProfitByIdentity(identityId).getTotalCurrentBalance()));
+    }
+
+    @Test
+    void createBet_AlreadySettled_CreditedOnSyncAndAsyncPaths() throws Exception {
+        BetOperationDTO won = BetOperationDTO.builder()
+                .accountId(accountId)
+                .amount(new BigDecimal("10.00"))
+                .eventName(eventName)
+                .odds(new BigDecimal("1.85"))
+                .outcome(BetOutcome.WIN)
+                .build();
+
+        financialOperationService.createBetOperation(won);
+        betIngestionService.submit(won).get(60, TimeUnit.SECONDS);
+
+        // 100 + 2 * (18.50 - 10.00)
+        BigDecimal expected = new BigDecimal("117.00");
+        assertEquals(0, expected.compareTo(accountRepository.findCurrentBalanceById(accountId)));
+        assertEquals(0, expected.compareTo(
+                statisticsService.calculateProfitByIdentity(identityId).getTotalCurrentBalance()));
+    }
+
+    @Test
+    void deleteSettledBet_ReversesRollover() throws Exception {
+        UUID promotion = promotionService.createPromotion(PromotionDTO.builder()
+                .description("Rollover " + eventName)
+                .bonusAmount(new BigDecimal("10.00"))
+                .rolloverTarget(new BigDecimal("100.00"))
+                .status(PromotionStatus.ACTIVE)
+                .accountId(accountId)
+                .build()).getId();
+
+        UUID settled = createBet("10.00", "2.00");
+        financialOperationService.updateBetOutcome(settled, BetOperationDTO.builder().outcome(BetOutcome.LOSS).build());
+        // Recorded already settled through async ingestion: counts right away
+        UUID ingested = betIngestionService.submit(BetOperationDTO.builder()
+                .accountId(accountId)
+                .amount(new BigDecimal("5.00"))
+                .eventName(eventName)
+                .odds(new BigDecimal("2.00"))
+                .outcome(BetOutcome.WIN)
+                .build()).get(60, TimeUnit.SECONDS).getId();
+        assertEquals(0, new BigDecimal("15.00").compareTo(
+                promotionRepository.findById(promotion).orElseThrow().getRolloverDone()));
+
+        financialOperationService.deleteOperation(settled);
+        financialOperationService.deleteOperation(ingested);
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(
+                promotionRepository.findById(promotion).orElseThrow().getRolloverDone()));
+    }
+
+    private UUID createBet(String amount, String odds) {
+        return financialOperationService.createBetOperation(BetOperationDTO.builder()
+                .accountId(accountId)
+                .amount(new BigDecimal(amount))
+                .eventName(eventName)
+                .odds(new BigDecimal(odds))
+                .build()).getId();
+    }
+}
@@ -0,0 +1,221 @@
+package com.betflow.services;
+
+import com.betflow.dto.account.AccountDTO;
+import com.betflow.dto.identity.IdentityDTO;
+import com.betflow.dto.operation.BetOperationDTO;
+import com.betflow.dto.operation.DepositDTO;
+import com.betflow.dto.platform.PlatformDTO;
+import com.betflow.dto.promotion.PromotionDTO;
+import com.betflow.entities.Promotion;
+import com.betflow.enums.BetOutcome;
+import com.betflow.enums.PlatformType;
+import com.betflow.enums.PromotionStatus;
+import com.betflow.repositories.AccountRepository;
+import com.betflow.repositories.PromotionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {
+        // Writers on the same account queue on its row lock, give them time instead of H2's 1s default
+        "spring.datasource.url=jdbc:h2:mem:concurrencydb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;LOCK_TIMEOUT=60000",
+        "spring.datasource.hikari.maximum-pool-size=16"
+})
+public class FinancialOperationConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int DEPOSITS = 1000;
+    private static final int BETS = 1000;
+
+    @Autowired
+    private FinancialOperationService financialOperationService;
+
+    @Autowired
+    private PlatformService platformService;
+
+    @Autowired
+    private IdentityService identityService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private BetIngestionService betIngestionService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PromotionService promotionService;
+
+    @Autowired
+    private PromotionRepository promotionRepository;
+
+    private UUID identityId;
+    private UUID accountId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+
+        PlatformDTO platform = platformService.createPlatform(PlatformDTO.builder()
+                .name("Concurrency " + suffix)
+                .websiteUrl("https://example.com")
+                .type(PlatformType.BOOKMAKER)
+                .build());
+
+        IdentityDTO identity = identityService.createIdentity(IdentityDTO.builder()
+                .firstName("Mario")
+                .lastName("Rossi")
+                .fiscalCode("RSSMRA" + suffix)
+                .build());
+        identityId = identity.getId();
+
+        AccountDTO account = accountService.createAccount(AccountDTO.builder()
+                .username("concurrency-" + suffix)
+                .password("secret")
+                .currentBalance(new BigDecimal("100.00"))
+                .identityId(identityId)
+                .platformId(platform.getId())
+                .build());
+        accountId = account.getId();
+    }
+
+    @Test
+    void parallelDepositsAndBets_KeepExactBalance() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < DEPOSITS; i++) {
+                futures.add(executor.submit(() -> financialOperationService.createDeposit(DepositDTO.builder()
+                        .accountId(accountId)
+                        .amount(new BigDecimal("10.00"))
+                        .paymentMethod("CARD")
+                        .build())));
+            }
+            for (int i = 0; i < BETS; i++) {
+                futures.add(executor.submit(() -> financialOperationService.createBetOperation(BetOperationDTO.builder()
+                        .accountId(accountId)
+                        .amount(new BigDecimal("3.00"))
+                        .eventName("Concurrency match")
+                        .odds(new BigDecimal("2.00"))
+                        .build())));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // 100 + 1000 * 10 - 1000 * 3
+        BigDecimal expected = new BigDecimal("7100.00");
+        assertEquals(0, expected.compareTo(accountRepository.findCurrentBalanceById(accountId)));
+        assertEquals(0, expected.compareTo(
+                statisticsService.calculateProfitByIdentity(identityId).getTotalCurrentBalance()));
+    }
+
+    @Test
+    void asyncBets_GroupCommittedWithExactBalance() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<CompletableFuture<BetOperationDTO>>> submissions = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < BETS; i++) {
+                submissions.add(executor.submit(() -> betIngestionService.submit(BetOperationDTO.builder()
+                        .accountId(accountId)
+                        .amount(new BigDecimal("0.10"))
+                        .eventName("Group commit match")
+                        .odds(new BigDecimal("2.00"))
+                        .build())));
+            }
+            Set<UUID> ids = new HashSet<>();
+            for (Future<CompletableFuture<BetOperationDTO>> submission : submissions) {
+                ids.add(submission.get().get(60, TimeUnit.SECONDS).getId());
+            }
+            assertEquals(BETS, ids.size());
+        } finally {
+            executor.shutdown();
+        }
+
+        // 100 - 1000 * 0.10
+        BigDecimal expected = new BigDecimal("0.00");
+        assertEquals(0, expected.compareTo(accountRepository.findCurrentBalanceById(accountId)));
+        assertEquals(0, expected.compareTo(
+                statisticsService.calculateProfitByIdentity(identityId).getTotalCurrentBalance()));
+    }
+
+    @Test
+    void parallelSettlements_AccrueRolloverAtomically() throws Exception {
+        UUID reached = createActivePromotion("60.00", "1.50");
+        UUID highOdds = createActivePromotion("60.00", "2.50");
+        UUID open = createActivePromotion("500.00", null);
+
+        List<UUID> betIds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            betIds.add(financialOperationService.createBetOperation(BetOperationDTO.builder()
+                    .accountId(accountId)
+                    .amount(new BigDecimal("0.50"))
+                    .eventName("Rollover match")
+                    .odds(new BigDecimal("2.00"))
+                    .build()).getId());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (UUID betId : betIds) {
+                futures.add(executor.submit(() -> financialOperationService.updateBetOutcome(betId,
+                        BetOperationDTO.builder().outcome(BetOutcome.LOSS).build())));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Accrual stops at the settlement that completes the promotion
+        Promotion completed = promotionRepository.findById(reached).orElseThrow();
+        assertEquals(PromotionStatus.COMPLETED, completed.getStatus());
+        assertEquals(0, new BigDecimal("60.00").compareTo(completed.getRolloverDone()));
+
+        // Odds below the promotion minimum never count
+        assertEquals(0, BigDecimal.ZERO.compareTo(promotionRepository.findById(highOdds).orElseThrow().getRolloverDone()));
+
+        // 200 * 0.50
+        Promotion active = promotionRepository.findById(open).orElseThrow();
+        assertEquals(PromotionStatus.ACTIVE, active.getStatus());
+        assertEquals(0, new BigDecimal("100.00").compareTo(active.getRolloverDone()));
+    }
+
+    private UUID createActivePromotion(String rolloverTarget, String minOdds) {
+        return promotionService.createPromotion(PromotionDTO.builder()
+                .description("Rollover " + rolloverTarget + " @ " + minOdds)
+                .bonusAmount(new BigDecimal("10.00"))
+                .rolloverTarget(new BigDecimal(rolloverTarget))
+                .minOdds(minOdds != null ? new BigDecimal(minOdds) : null)
+                .status(PromotionStatus.ACTIVE)
+                .accountId(accountId)
+                .build()).getId();
+    }
+}
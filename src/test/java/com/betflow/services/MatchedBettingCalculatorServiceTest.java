@@ -0,0 +1,109 @@
+package com.betflow.services;
+
+import com.betflow.dto.calculator.MatchedBetRequestDTO;
+import com.betflow.dto.calculator.MatchedBetResultDTO;
+import com.betflow.dto.calculator.ScenarioBatchRequestDTO;
+import com.betflow.dto.calculator.ScenarioBatchResultDTO;
+import com.betflow.enums.MatchedBetType;
+import com.betflow.exceptions.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchedBettingCalculatorServiceTest {
+
+    private final MatchedBettingCalculatorService calculator = new MatchedBettingCalculatorService(null);
+
+    @Test
+    void calculate_QualifyingBet() {
+        MatchedBetResultDTO result = calculator.calculate(request(MatchedBetType.QUALIFYING, "2.0", "2.1"));
+
+        assertEquals(new BigDecimal("9.76"), result.getLayStake());
+        assertEquals(new BigDecimal("10.74"), result.getLiability());
+        assertEquals(new BigDecimal("-0.74"), result.getProfitIfBackWins());
+        assertEquals(new BigDecimal("-0.73"), result.getProfitIfLayWins());
+        assertEquals(new BigDecimal("-0.74"), result.getGuaranteedProfit());
+    }
+
+    @Test
+    void calculate_FreeBetDoesNotReturnStake() {
+        MatchedBetResultDTO result = calculator.calculate(request(MatchedBetType.FREE_BET, "5", "5.5"));
+
+        assertEquals(new BigDecimal("7.34"), result.getLayStake());
+        assertEquals(new BigDecimal("6.97"), result.getProfitIfBackWins());
+        assertEquals(new BigDecimal("6.97"), result.getProfitIfLayWins());
+        assertEquals(new BigDecimal("69.70"), result.getRating());
+    }
+
+    @Test
+    void evaluateBatch_ReturnsBestScenariosFirst() {
+        int pairs = 5_000;
+        double[] back = new double[pairs];
+        double[] lay = new double[pairs];
+        for (int i = 0; i < pairs; i++) {
+            back[i] = 2.0 + (i % 100) / 100.0;
+            lay[i] = back[i] + 0.02 + (i % 7) / 10.0;
+        }
+
+        ScenarioBatchResultDTO result = calculator.evaluateBatch(ScenarioBatchRequestDTO.builder()
+                .stake(new BigDecimal("10"))
+                .commission(new BigDecimal("2"))
+                .backOdds(back)
+                .layOdds(lay)
+                .limit(20)
+                .build());
+
+        assertEquals(pairs, result.getEvaluated());
+        assertEquals(20, result.getScenarios().size());
+        for (int i = 1; i < result.getScenarios().size(); i++) {
+            assertTrue(result.getScenarios().get(i - 1).getGuaranteedProfit()
+                    .compareTo(result.getScenarios().get(i).getGuaranteedProfit()) >= 0);
+        }
+
+        // The top scenario matches the best single calculation over every pair
+        BigDecimal best = null;
+        for (int i = 0; i < pairs; i++) {
+            MatchedBetResultDTO single = calculator.calculate(MatchedBetRequestDTO.builder()
+                    .stake(new BigDecimal("10"))
+                    .backOdds(BigDecimal.valueOf(back[i]))
+                    .layOdds(BigDecimal.valueOf(lay[i]))
+                    .commission(new BigDecimal("2"))
+                    .build());
+            if (best == null || single.getGuaranteedProfit().compareTo(best) > 0) {
+                best = single.getGuaranteedProfit();
+            }
+        }
+        assertEquals(best, result.getScenarios().get(0).getGuaranteedProfit());
+    }
+
+    @Test
+    void evaluateBatch_RejectsInvalidOdds() {
+        ScenarioBatchRequestDTO request = ScenarioBatchRequestDTO.builder()
+                .stake(new BigDecimal("10"))
+                .backOdds(new double[]{2.0, Double.NaN})
+                .layOdds(new double[]{2.1, 2.2})
+                .build();
+
+        assertThrows(BadRequestException.class, () -> calculator.evaluateBatch(request));
+
+        ScenarioBatchRequestDTO infinite = ScenarioBatchRequestDTO.builder()
+                .stake(new BigDecimal("10"))
+                .backOdds(new double[]{2.0, Double.POSITIVE_INFINITY})
+                .layOdds(new double[]{2.1, 2.2})
+                .build();
+
+        assertThrows(BadRequestException.class, () -> calculator.evaluateBatch(infinite));
+    }
+
+    private MatchedBetRequestDTO request(MatchedBetType betType, String backOdds, String layOdds) {
+        return MatchedBetRequestDTO.builder()
+                .stake(new BigDecimal("10"))
+                .backOdds(new BigDecimal(backOdds))
+                .layOdds(new BigDecimal(layOdds))
+                .commission(new BigDecimal("5"))
+                .betType(betType)
+                .build();
+    }
+}